@@ -11,6 +11,8 @@ import io.github.apace100.calio.resource.OrderedResourceListenerInitializer;
 import io.github.apace100.calio.resource.OrderedResourceListenerManager;
 import io.github.apace100.origins.badge.BadgeManager;
 import io.github.apace100.origins.command.OriginCommand;
+import io.github.apace100.origins.component.OriginSyncScheduler;
+import io.github.apace100.origins.component.PlayerOriginDataMigration;
 import io.github.apace100.origins.networking.ModPacketsC2S;
 import io.github.apace100.origins.origin.Origin;
 import io.github.apace100.origins.origin.OriginLayers;
@@ -19,6 +21,7 @@ import io.github.apace100.origins.power.OriginsEntityConditions;
 import io.github.apace100.origins.power.OriginsPowerTypes;
 import io.github.apace100.origins.registry.*;
 import io.github.apace100.origins.util.ChoseOriginCriterion;
+import io.github.apace100.origins.util.DataPackWatcher;
 import io.github.apace100.origins.util.OriginLootCondition;
 import io.github.apace100.origins.util.OriginsConfigSerializer;
 import io.github.apace100.origins.util.OriginsJsonConfigSerializer;
@@ -100,6 +103,9 @@ public class Origins implements ModInitializer, OrderedResourceListenerInitializ
 		Registry.register(Registries.LOOT_CONDITION_TYPE, identifier("origin"), OriginLootCondition.TYPE);
 
 		ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> ModComponents.ORIGIN.get(handler.player).selectingOrigin(false));
+		DataPackWatcher.register();
+		OriginSyncScheduler.register();
+		PlayerOriginDataMigration.register();
 	}
 
 	public static void serializeConfig() {
@@ -135,6 +141,17 @@ public class Origins implements ModInitializer, OrderedResourceListenerInitializ
 
 		public boolean performVersionCheck = true;
 
+		/**
+		 * Keeps writing the origins of players in the format of older versions of Origins alongside the compact format, so that
+		 * downgrading Origins doesn't lose the origins of players. Only turn this off once downgrading is no longer needed.
+		 */
+		public boolean writeLegacyOriginData = true;
+
+		/**
+		 * Reloads the data packs whenever a file in the data packs folder of the world changes. Intended for developing data packs.
+		 */
+		public boolean watchDataPacks = false;
+
 		public JsonObject origins = new JsonObject();
 
 		public boolean isOriginDisabled(Identifier originId) {
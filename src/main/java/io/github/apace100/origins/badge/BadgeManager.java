@@ -10,10 +10,9 @@ import io.github.apace100.apoli.power.*;
 import io.github.apace100.calio.registry.DataObjectRegistry;
 import io.github.apace100.origins.Origins;
 import io.github.apace100.origins.integration.AutoBadgeCallback;
+import io.github.apace100.origins.networking.CachedPacket;
 import io.github.apace100.origins.networking.ModPackets;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
-import net.fabricmc.fabric.api.networking.v1.PacketByteBufs;
-import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
 import net.minecraft.inventory.CraftingInventory;
 import net.minecraft.network.PacketByteBuf;
 import net.minecraft.recipe.Recipe;
@@ -38,6 +37,7 @@ public final class BadgeManager {
     public static final Identifier PHASE = Origins.identifier("phase/badge_manager");
 
     private static final Map<Identifier, List<Badge>> BADGES = new HashMap<>();
+    private static final CachedPacket SYNC_PACKET = new CachedPacket(ModPackets.BADGE_LIST, () -> 0, BadgeManager::writeBadges);
 
     private static final Identifier TOGGLE_BADGE_SPRITE = Origins.identifier("textures/gui/badge/toggle.png");
     private static final Identifier ACTIVE_BADGE_SPRITE = Origins.identifier("textures/gui/badge/active.png");
@@ -62,16 +62,14 @@ public final class BadgeManager {
     }
 
     public static void sync(ServerPlayerEntity player) {
-
-        PacketByteBuf badgesBuf = PacketByteBufs.create();
         REGISTRY.sync(player);
+        SYNC_PACKET.send(player);
+    }
 
+    private static void writeBadges(PacketByteBuf badgesBuf) {
         badgesBuf.writeMap(BADGES,
             PacketByteBuf::writeIdentifier,
             (valueBuf, badges) -> valueBuf.writeCollection(badges, REGISTRY::writeDataObject));
-
-        ServerPlayNetworking.send(player, ModPackets.BADGE_LIST, badgesBuf);
-
     }
 
     public static void register(BadgeFactory factory) {
@@ -81,6 +79,7 @@ public final class BadgeManager {
     public static void putPowerBadge(Identifier powerId, Badge badge) {
         List<Badge> badgeList = BADGES.computeIfAbsent(powerId, id -> new LinkedList<>());
         badgeList.add(badge);
+        SYNC_PACKET.invalidate();
     }
 
     public static List<Badge> getPowerBadges(Identifier powerId) {
@@ -89,6 +88,7 @@ public final class BadgeManager {
 
     public static void clear() {
         BADGES.clear();
+        SYNC_PACKET.invalidate();
     }
 
     public static void readCustomBadges(Identifier powerId, Identifier factoryId, boolean isSubPower, JsonElement data, PowerType<?> powerType) {
@@ -141,6 +141,7 @@ public final class BadgeManager {
             return;
         }
 
+        SYNC_PACKET.invalidate();
         if(powerType instanceof MultiplePowerType<?> mp) {
             // Multiple powers retrieve their automatic badges from all sub-powers
             List<Badge> badgeList = BADGES.computeIfAbsent(powerId, id -> new LinkedList<>());
@@ -5,20 +5,24 @@ import com.mojang.brigadier.context.CommandContext;
 import com.mojang.brigadier.exceptions.CommandSyntaxException;
 import io.github.apace100.origins.Origins;
 import io.github.apace100.origins.component.OriginComponent;
+import io.github.apace100.origins.component.OriginSyncScheduler;
+import io.github.apace100.origins.component.PlayerOriginDataMigration;
 import io.github.apace100.origins.networking.packet.s2c.OpenChooseOriginScreenS2CPacket;
 import io.github.apace100.origins.origin.Origin;
 import io.github.apace100.origins.origin.OriginLayer;
+import io.github.apace100.origins.origin.OriginLayerIndex;
 import io.github.apace100.origins.origin.OriginLayers;
-import io.github.apace100.origins.origin.OriginRegistry;
 import io.github.apace100.origins.registry.ModComponents;
 import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
 import net.minecraft.command.argument.EntityArgumentType;
+import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.command.ServerCommandSource;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.text.Text;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 import static net.minecraft.server.command.CommandManager.argument;
 import static net.minecraft.server.command.CommandManager.literal;
@@ -70,6 +74,9 @@ public class OriginCommand {
 						)
 					)
 				)
+				.then(literal("migrate_player_data")
+					.executes(OriginCommand::migratePlayerData)
+				)
 		);
 	}
 
@@ -88,7 +95,7 @@ public class OriginCommand {
 		
 		int processedTargets = 0;
 		
-		if (origin.equals(Origin.EMPTY) || originLayer.getOrigins().contains(origin.getIdentifier())) {
+		if (origin.equals(Origin.EMPTY) || originLayer.contains(origin)) {
 			
 			for (ServerPlayerEntity target : targets) {
 				
@@ -133,7 +140,7 @@ public class OriginCommand {
 		
 		int processedTargets = 0;
 		
-		if (origin.equals(Origin.EMPTY) || originLayer.getOrigins().contains(origin.getIdentifier())) {
+		if (origin.equals(Origin.EMPTY) || originLayer.contains(origin)) {
 			
 			for (ServerPlayerEntity target : targets) {
 				OriginComponent originComponent = ModComponents.ORIGIN.get(target);
@@ -238,7 +245,7 @@ public class OriginCommand {
 
 			Origin origin = null;
 			for (ServerPlayerEntity target : targets) {
-				origin = getRandomOrigin(target, originLayer);
+				origin = randomizeOrigins(target, List.of(originLayer)).get(0);
 			}
 
 			if (targets.size() > 1) serverCommandSource.sendFeedback(() -> Text.translatable("commands.origin.random.success.multiple", targets.size(), originLayer.getName()), true);
@@ -276,9 +283,7 @@ public class OriginCommand {
 		}
 
 		for (ServerPlayerEntity target : targets) {
-			for (OriginLayer originLayer : originLayers) {
-				getRandomOrigin(target, originLayer);
-			}
+			randomizeOrigins(target, originLayers);
 		}
 
 		serverCommandSource.sendFeedback(() -> Text.translatable("commands.origin.random.all", targets.size(), originLayers.size()), false);
@@ -286,6 +291,40 @@ public class OriginCommand {
 
 	}
 
+	/**
+	 * 	Migrate the origin data in the player data files of every player that is not online, so that it doesn't need to be
+	 * 	migrated when they join. The files are migrated on an I/O worker thread, and the result is reported once it's done.
+	 * 	@param commandContext the command context
+	 * 	@return 1 if the migration was started, 0 if another migration is still running
+	 */
+	private static int migratePlayerData(CommandContext<ServerCommandSource> commandContext) {
+
+		ServerCommandSource serverCommandSource = commandContext.getSource();
+		MinecraftServer server = serverCommandSource.getServer();
+
+		CompletableFuture<PlayerOriginDataMigration.Result> migration = PlayerOriginDataMigration.migratePlayerDataAsync(server);
+		if (migration == null) {
+			serverCommandSource.sendError(Text.translatable("commands.origin.migrate_player_data.already_running"));
+			return 0;
+		}
+
+		serverCommandSource.sendFeedback(() -> Text.translatable("commands.origin.migrate_player_data.started"), true);
+		migration.whenCompleteAsync((result, throwable) -> {
+
+			if (throwable == null) {
+				serverCommandSource.sendFeedback(() -> Text.translatable("commands.origin.migrate_player_data.success", result.migrated(), result.upToDate(), result.failed()), true);
+				return;
+			}
+
+			Origins.LOGGER.error("Could not migrate the origin data of the player data files: {}", throwable.getMessage());
+			serverCommandSource.sendError(Text.translatable("commands.origin.migrate_player_data.failed"));
+
+		}, server);
+
+		return 1;
+
+	}
+
 	private static void openLayerScreen(ServerPlayerEntity target) {
 		openLayerScreen(target, null);
 	}
@@ -301,46 +340,66 @@ public class OriginCommand {
 			layersToProcess.addAll(OriginLayers.getLayers());
 		}
 
-		layersToProcess
-			.stream()
-			.filter(OriginLayer::isEnabled)
-			.forEach(ol -> component.setOrigin(ol, Origin.EMPTY));
+		try (OriginComponent.Edit edit = component.edit()) {
+
+			layersToProcess
+				.stream()
+				.filter(OriginLayer::isEnabled)
+				.forEach(ol -> edit.setOrigin(ol, Origin.EMPTY));
 
-		boolean originAutomaticallyAssigned = component.checkAutoChoosingLayers(target, false);
-		int originOptions = layer != null ? layer.getOriginOptionCount(target) : OriginLayers.getOriginOptionCount(target);
+			boolean originAutomaticallyAssigned = component.checkAutoChoosingLayers(target, false);
+			int originOptions = layer != null ? layer.getOriginOptionCount(target) : OriginLayers.getOriginOptionCount(target);
 
-		component.selectingOrigin(!originAutomaticallyAssigned || originOptions > 0);
-		component.sync();
+			component.selectingOrigin(!originAutomaticallyAssigned || originOptions > 0);
+			edit.commit();
+
+		}
 
 		if (component.isSelectingOrigin()) {
-			ServerPlayNetworking.send(target, new OpenChooseOriginScreenS2CPacket(false));
+			OriginSyncScheduler.flush(target);
+			ServerPlayNetworking.send(target, OpenChooseOriginScreenS2CPacket.create(target, false));
 		}
 
 	}
 
-	private static Origin getRandomOrigin(ServerPlayerEntity target, OriginLayer originLayer) {
+	/**
+	 * 	Randomize the origins of the specified player in the specified origin layers, which are applied as a single edit.
+	 * 	@return the origins the player was assigned, in the order of the origin layers
+	 */
+	private static List<Origin> randomizeOrigins(ServerPlayerEntity target, List<OriginLayer> originLayers) {
 
-		List<Origin> origins = originLayer.getRandomOrigins(target).stream().map(OriginRegistry::get).toList();
 		OriginComponent originComponent = ModComponents.ORIGIN.get(target);
-		Origin origin = origins.get(new Random().nextInt(origins.size()));
+		List<Origin> origins = new ArrayList<>(originLayers.size());
 
 		boolean hadOriginBefore = originComponent.hadOriginBefore();
 		boolean hadAllOrigins = originComponent.hasAllOrigins();
 
-		originComponent.setOrigin(originLayer, origin);
-		originComponent.checkAutoChoosingLayers(target, false);
-		originComponent.sync();
+		try (OriginComponent.Edit edit = originComponent.edit()) {
 
-		if (originComponent.hasAllOrigins() && !hadAllOrigins) OriginComponent.onChosen(target, hadOriginBefore);
+			for (OriginLayer originLayer : originLayers) {
 
-		Origins.LOGGER.info(
-			"Player {} was randomly assigned the origin {} for layer {}",
-			target.getDisplayName().getString(),
-			origin.getIdentifier().toString(),
-			originLayer.getIdentifier().toString()
-		);
+				OriginLayerIndex index = originLayer.getIndex();
+				Origin origin = index.getRandomOrigin(target, new Random().nextInt(index.getRandomCount(target)));
+
+				edit.setOrigin(originLayer, origin);
+				origins.add(origin);
+
+				Origins.LOGGER.info(
+					"Player {} was randomly assigned the origin {} for layer {}",
+					target.getDisplayName().getString(),
+					origin.getIdentifier().toString(),
+					originLayer.getIdentifier().toString()
+				);
+
+			}
 
-		return origin;
+			originComponent.checkAutoChoosingLayers(target, false);
+			edit.commit();
+
+		}
+
+		if (originComponent.hasAllOrigins() && !hadAllOrigins) OriginComponent.onChosen(target, hadOriginBefore);
+		return origins;
 
 	}
 	
@@ -0,0 +1,77 @@
+package io.github.apace100.origins.component;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtList;
+import net.minecraft.nbt.NbtString;
+
+import java.util.function.BiConsumer;
+
+/**
+ *  The compact encoding of the origins of a player in NBT. Instead of a compound with the full IDs of the layer and the
+ *  origin for every layer, the IDs are stored once in a palette, and every layer is stored as a single int that packs
+ *  the index of the ID of the layer (in the upper 16 bits) and of the origin (in the lower 16 bits) in the palette.
+ */
+final class CompactOriginsNbt {
+
+    static final String PALETTE_KEY = "Palette";
+    static final String ORIGINS_KEY = "Origins";
+
+    private final Object2IntMap<String> indices = new Object2IntOpenHashMap<>();
+    private final NbtList palette = new NbtList();
+    private final IntList packedOrigins = new IntArrayList();
+
+    CompactOriginsNbt() {
+        this.indices.defaultReturnValue(-1);
+    }
+
+    static boolean isPresent(NbtCompound componentNbt) {
+        return componentNbt.contains(PALETTE_KEY, NbtElement.LIST_TYPE);
+    }
+
+    /**
+     *  Calls the specified action with the IDs of every layer and its origin, as they were written by
+     *  {@link #writeTo(NbtCompound)}.
+     */
+    static void forEach(NbtCompound componentNbt, BiConsumer<String, String> action) {
+
+        NbtList palette = componentNbt.getList(PALETTE_KEY, NbtElement.STRING_TYPE);
+        for (int packedOrigin : componentNbt.getIntArray(ORIGINS_KEY)) {
+            action.accept(palette.getString(packedOrigin >>> 16), palette.getString(packedOrigin & 0xFFFF));
+        }
+
+    }
+
+    void add(String layerId, String originId) {
+        packedOrigins.add(getIndex(layerId) << 16 | getIndex(originId));
+    }
+
+    void writeTo(NbtCompound componentNbt) {
+        componentNbt.put(PALETTE_KEY, palette);
+        componentNbt.putIntArray(ORIGINS_KEY, packedOrigins.toIntArray());
+    }
+
+    private int getIndex(String id) {
+
+        int index = indices.getInt(id);
+        if (index == -1) {
+
+            index = palette.size();
+            if (index > 0xFFFF) {
+                throw new IllegalStateException("Too many different IDs to encode the origins of a player compactly");
+            }
+
+            palette.add(NbtString.of(id));
+            indices.put(id, index);
+
+        }
+
+        return index;
+
+    }
+
+}
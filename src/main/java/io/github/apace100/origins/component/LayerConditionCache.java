@@ -0,0 +1,112 @@
+package io.github.apace100.origins.component;
+
+import io.github.apace100.origins.origin.OriginLayerIndex;
+import io.github.apace100.origins.origin.OriginLayers;
+import io.github.apace100.origins.origin.OriginRegistry;
+import io.github.apace100.origins.registry.ModComponents;
+import net.minecraft.entity.player.PlayerEntity;
+
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *  Caches which conditioned origins of each layer are available to a player, and the amount of options the player has
+ *  in each layer. The cached results are only valid for the tick (and the generation of the origin and layer
+ *  registries) they were evaluated in, and are dropped whenever the origin component of the player changes.
+ */
+public final class LayerConditionCache {
+
+    private static final AtomicLong HITS = new AtomicLong();
+    private static final AtomicLong MISSES = new AtomicLong();
+
+    private final Map<OriginLayerIndex, Entry> entries = new IdentityHashMap<>();
+    private final Runnable beforeEvaluation;
+
+    private long time = Long.MIN_VALUE;
+    private long originsGeneration = Long.MIN_VALUE;
+    private long layersGeneration = Long.MIN_VALUE;
+
+    /**
+     *  @param beforeEvaluation called before the conditions of a layer are evaluated, so that the owner of the cache
+     *                          can bring the state of the player up-to-date first
+     */
+    public LayerConditionCache(Runnable beforeEvaluation) {
+        this.beforeEvaluation = beforeEvaluation;
+    }
+
+    /**
+     *  @return the groups of the index whose condition is fulfilled by the player
+     */
+    public static BitSet getAvailableGroups(PlayerEntity player, OriginLayerIndex index) {
+        return ModComponents.ORIGIN.getNullable(player) instanceof PlayerOriginComponent component
+            ? component.getConditionCache().getEntry(player, index).availableGroups()
+            : index.testConditions(player);
+    }
+
+    /**
+     *  @return the amount of options the player has in the layer of the index
+     */
+    public static int getOptionCount(PlayerEntity player, OriginLayerIndex index) {
+        return ModComponents.ORIGIN.getNullable(player) instanceof PlayerOriginComponent component
+            ? component.getConditionCache().getEntry(player, index).optionCount()
+            : index.getOptionCount(index.testConditions(player));
+    }
+
+    public static long getHits() {
+        return HITS.get();
+    }
+
+    public static long getMisses() {
+        return MISSES.get();
+    }
+
+    public static double getHitRate() {
+        long hits = HITS.get();
+        long total = hits + MISSES.get();
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    public synchronized void invalidate() {
+        entries.clear();
+    }
+
+    private synchronized Entry getEntry(PlayerEntity player, OriginLayerIndex index) {
+
+        long time = player.getWorld().getTime();
+        long originsGeneration = OriginRegistry.getGeneration();
+        long layersGeneration = OriginLayers.getGeneration();
+
+        if (this.time != time || this.originsGeneration != originsGeneration || this.layersGeneration != layersGeneration) {
+
+            this.entries.clear();
+
+            this.time = time;
+            this.originsGeneration = originsGeneration;
+            this.layersGeneration = layersGeneration;
+
+        }
+
+        Entry entry = entries.get(index);
+        if (entry != null) {
+            HITS.incrementAndGet();
+            return entry;
+        }
+
+        MISSES.incrementAndGet();
+        beforeEvaluation.run();
+
+        BitSet availableGroups = index.testConditions(player);
+        entry = new Entry(availableGroups, index.getOptionCount(availableGroups));
+
+        entries.put(index, entry);
+        return entry;
+
+    }
+
+    private record Entry(BitSet availableGroups, int optionCount) {
+
+    }
+
+}
@@ -8,23 +8,61 @@ import io.github.apace100.apoli.power.Power;
 import io.github.apace100.apoli.power.PowerType;
 import io.github.apace100.origins.origin.Origin;
 import io.github.apace100.origins.origin.OriginLayer;
+import io.github.apace100.origins.origin.OriginLayerIndex;
 import io.github.apace100.origins.origin.OriginLayers;
 import io.github.apace100.origins.origin.OriginRegistry;
+import io.github.apace100.origins.origin.RegistrySnapshot;
 import io.github.apace100.origins.power.OriginsCallbackPower;
-import io.github.apace100.origins.registry.ModComponents;
 import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.util.Identifier;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.BiConsumer;
 
 public interface OriginComponent extends AutoSyncedComponent, CommonTickingComponent {
 
+	/**
+	 *	@return a read-only copy of the origins of every layer. Prefer {@link #forEachOrigin(BiConsumer)} or
+	 *			{@link #originAt(int)}, which don't allocate anything.
+	 */
 	Map<OriginLayer, Origin> getOrigins();
 	Origin getOrigin(OriginLayer layer);
 
+	/**
+	 *	@param rawId	the raw ID of a layer in the current layer registry (see {@link OriginLayer#getRawId()})
+	 *	@return			the origin of the layer, or null if the layer has none
+	 */
+	@Nullable
+	default Origin originAt(int rawId) {
+
+		RegistrySnapshot<OriginLayer> snapshot = OriginLayers.snapshot();
+		Identifier layerId = snapshot.palette().getId(rawId);
+
+		return layerId != null
+			? getOrigin(snapshot.get(layerId))
+			: null;
+
+	}
+
+	/**
+	 *	@param rawId	the raw ID of a layer in the current layer registry (see {@link OriginLayer#getRawId()})
+	 *	@return			whether the layer has an origin other than {@link Origin#EMPTY}
+	 */
+	default boolean hasOrigin(int rawId) {
+		Origin origin = originAt(rawId);
+		return origin != null
+			&& origin != Origin.EMPTY;
+	}
+
+	default void forEachOrigin(BiConsumer<OriginLayer, Origin> action) {
+		getOrigins().forEach(action);
+	}
+
 	boolean hasSelectionInvulnerability();
 	boolean isSelectingOrigin();
 	boolean hasOrigin(OriginLayer layer);
@@ -36,12 +74,36 @@ public interface OriginComponent extends AutoSyncedComponent, CommonTickingCompo
 	void setOrigin(OriginLayer layer, Origin origin);
 	void sync();
 
+	/**
+	 *	Starts an edit of the origins of several layers. The origins of the layers are changed right away, but the
+	 *	powers are only granted and revoked, and the component is only synced, once the edit is committed. Conditions of
+	 *	layers that are evaluated while the edit is open still see the powers of the origins that were set so far.
+	 *	Calls to {@link #setOrigin(OriginLayer, Origin)} and {@link #removeLayer(OriginLayer)} while an edit is open are
+	 *	part of that edit, and so are nested edits. An edit that is closed without being committed (e.g: because an
+	 *	exception was thrown) reverts its changes.<br>
+	 *	<br>
+	 *	The default implementation applies every change right away, like {@link ImmediateEdit}.
+	 *
+	 *	<pre>{@code
+	 *	try (OriginComponent.Edit edit = component.edit()) {
+	 *		edit.setOrigin(layer, origin);
+	 *		component.checkAutoChoosingLayers(player, false);
+	 *		edit.commit();
+	 *	}
+	 *	}</pre>
+	 */
+	default Edit edit() {
+		return new ImmediateEdit(this);
+	}
+
 	@Deprecated(forRemoval = true)
 	void onPowersRead();
 
+	/**
+	 *	Marks the origin and power components of the player to be synced at the end of the tick. See {@link OriginSyncScheduler}.
+	 */
 	static void sync(PlayerEntity player) {
-		ModComponents.ORIGIN.sync(player);
-		PowerHolderComponent.KEY.sync(player);
+		OriginSyncScheduler.markDirty(player);
 	}
 
 	static void onChosen(PlayerEntity player, boolean hadOriginBefore) {
@@ -75,46 +137,136 @@ public interface OriginComponent extends AutoSyncedComponent, CommonTickingCompo
 			.forEach(layers::add);
 
 		Collections.sort(layers);
-		for (OriginLayer layer : layers) {
+		try (Edit edit = edit()) {
 
-			if (!layer.isEnabled() || hasOrigin(layer)) {
-				continue;
-			}
+			for (OriginLayer layer : layers) {
 
-			if (includeDefaults && layer.hasDefaultOrigin()) {
+				if (!layer.isEnabled() || hasOrigin(layer)) {
+					continue;
+				}
 
-				setOrigin(layer, OriginRegistry.get(layer.getDefaultOrigin()));
-				choseOneAutomatically = true;
+				if (includeDefaults && layer.hasDefaultOrigin()) {
 
-			} else if (layer.getOriginOptionCount(player) == 1 && layer.shouldAutoChoose()) {
+					edit.setOrigin(layer, OriginRegistry.get(layer.getDefaultOrigin()));
+					choseOneAutomatically = true;
 
-				List<Origin> origins = layer.getOrigins(player)
-					.stream()
-					.map(OriginRegistry::get)
-					.filter(Origin::isChoosable)
-					.toList();
+				} else if (layer.getOriginOptionCount(player) == 1 && layer.shouldAutoChoose()) {
 
-				if (!origins.isEmpty()) {
+					OriginLayerIndex index = layer.getIndex();
+					Origin origin = index.getChoosableOrigin(player, 0);
 
-					setOrigin(layer, origins.get(0));
-					choseOneAutomatically = true;
+					int randomOriginCount;
+					if (origin != null) {
 
-				} else if (layer.isRandomAllowed() && !layer.getRandomOrigins(player).isEmpty()) {
+						edit.setOrigin(layer, origin);
+						choseOneAutomatically = true;
 
-					List<Identifier> randomOriginIds = layer.getRandomOrigins(player);
-					int randomOriginIndex = player.getRandom().nextInt(randomOriginIds.size());
+					} else if (layer.isRandomAllowed() && (randomOriginCount = index.getRandomCount(player)) > 0) {
 
-					setOrigin(layer, OriginRegistry.get(randomOriginIds.get(randomOriginIndex)));
-					choseOneAutomatically = true;
+						edit.setOrigin(layer, index.getRandomOrigin(player, player.getRandom().nextInt(randomOriginCount)));
+						choseOneAutomatically = true;
+
+					}
 
 				}
 
 			}
 
+			//	Otherwise, the edit is closed without changes, which neither marks the player as dirty nor syncs it
+			if (choseOneAutomatically) {
+				edit.commit();
+			}
+
 		}
 
 		return choseOneAutomatically;
 
 	}
 
+	interface Edit extends AutoCloseable {
+
+		Edit setOrigin(OriginLayer layer, Origin origin);
+		Edit removeLayer(OriginLayer layer);
+
+		/**
+		 *	Marks the edit to be committed once it is closed.
+		 */
+		void commit();
+
+		/**
+		 *	Applies the edit if it was committed, or reverts its changes otherwise. The changes of a committed edit that
+		 *	is nested in another edit become part of that edit.
+		 */
+		@Override
+		void close();
+
+	}
+
+	/**
+	 *	An edit that changes the origins of the component right away, for implementations that can't defer the powers.
+	 *	Only the changes made through the edit itself are reverted if it is closed without being committed.
+	 */
+	final class ImmediateEdit implements Edit {
+
+		private final OriginComponent component;
+		private final Map<OriginLayer, Origin> previousOrigins = new LinkedHashMap<>();
+
+		private boolean committed = false;
+		private boolean closed = false;
+
+		public ImmediateEdit(OriginComponent component) {
+			this.component = component;
+		}
+
+		@Override
+		public Edit setOrigin(OriginLayer layer, Origin origin) {
+			remember(layer);
+			component.setOrigin(layer, origin);
+			return this;
+		}
+
+		@Override
+		public Edit removeLayer(OriginLayer layer) {
+			remember(layer);
+			component.removeLayer(layer);
+			return this;
+		}
+
+		@Override
+		public void commit() {
+			committed = true;
+		}
+
+		@Override
+		public void close() {
+
+			if (closed) {
+				return;
+			}
+
+			closed = true;
+			if (!committed) {
+				previousOrigins.forEach((layer, origin) -> {
+					if (origin != null) {
+						component.setOrigin(layer, origin);
+					} else {
+						component.removeLayer(layer);
+					}
+				});
+			}
+
+			if (committed || !previousOrigins.isEmpty()) {
+				component.sync();
+			}
+
+		}
+
+		private void remember(OriginLayer layer) {
+			if (!previousOrigins.containsKey(layer)) {
+				previousOrigins.put(layer, component.getOrigin(layer));
+			}
+		}
+
+	}
+
 }
@@ -0,0 +1,146 @@
+package io.github.apace100.origins.component;
+
+import io.github.apace100.apoli.component.PowerHolderComponent;
+import io.github.apace100.origins.networking.packet.s2c.SyncPlayerOriginsS2CPacket;
+import io.github.apace100.origins.registry.ModComponents;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.fabricmc.fabric.api.networking.v1.EntityTrackingEvents;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.server.network.ServerPlayerEntity;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *  Coalesces the syncs of the origin and power components of players. Instead of syncing both components every time
+ *  {@link OriginComponent#sync(PlayerEntity)} is called, the player is marked as dirty and the components are synced
+ *  once at the end of the tick. Code that sends a packet which relies on the client having an up-to-date component
+ *  should call {@link #flush(ServerPlayerEntity)} first.<br>
+ *  <br>
+ *  Other players only receive the origin component of a player while they are tracking it. When a player starts
+ *  tracking another player, the origins of the tracked player are sent at the end of the tick, with all players it
+ *  started tracking during the same tick bundled into a single packet. The component is only synced with the player
+ *  itself and the players that received it this way (see {@link PlayerOriginComponent#shouldSyncWith(ServerPlayerEntity)}).
+ */
+public final class OriginSyncScheduler {
+
+    private static final Set<ServerPlayerEntity> DIRTY_PLAYERS = new LinkedHashSet<>();
+    private static final Map<ServerPlayerEntity, Set<ServerPlayerEntity>> NEW_TRACKERS = new LinkedHashMap<>();
+    private static final AtomicLong AVOIDED_SYNCS = new AtomicLong();
+
+    public static void register() {
+        ServerTickEvents.END_SERVER_TICK.register(server -> {
+            flushAll();
+            flushTrackers();
+        });
+        ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> {
+            DIRTY_PLAYERS.remove(handler.player);
+            NEW_TRACKERS.remove(handler.player);
+        });
+        EntityTrackingEvents.START_TRACKING.register((trackedEntity, player) -> {
+            if (trackedEntity instanceof ServerPlayerEntity trackedPlayer && ModComponents.ORIGIN.getNullable(trackedPlayer) instanceof PlayerOriginComponent) {
+                NEW_TRACKERS.computeIfAbsent(player, k -> new LinkedHashSet<>()).add(trackedPlayer);
+            }
+        });
+        EntityTrackingEvents.STOP_TRACKING.register((trackedEntity, player) -> {
+
+            Set<ServerPlayerEntity> trackedPlayers = NEW_TRACKERS.get(player);
+            if (trackedPlayers != null) {
+                trackedPlayers.remove(trackedEntity);
+            }
+
+            if (ModComponents.ORIGIN.getNullable(trackedEntity) instanceof PlayerOriginComponent component) {
+                component.forgetRecipient(player);
+            }
+
+        });
+    }
+
+    public static void markDirty(PlayerEntity player) {
+
+        if (!(player instanceof ServerPlayerEntity serverPlayer)) {
+            syncNow(player);
+        } else if (!DIRTY_PLAYERS.add(serverPlayer)) {
+            AVOIDED_SYNCS.incrementAndGet();
+        }
+
+    }
+
+    /**
+     *  Syncs the components of the specified player right away if they were marked as dirty.
+     */
+    public static void flush(ServerPlayerEntity player) {
+        if (DIRTY_PLAYERS.remove(player)) {
+            syncNow(player);
+        }
+    }
+
+    public static void flushAll() {
+
+        if (DIRTY_PLAYERS.isEmpty()) {
+            return;
+        }
+
+        List<ServerPlayerEntity> players = List.copyOf(DIRTY_PLAYERS);
+        DIRTY_PLAYERS.clear();
+
+        players.forEach(OriginSyncScheduler::syncNow);
+
+    }
+
+    private static void flushTrackers() {
+
+        if (NEW_TRACKERS.isEmpty()) {
+            return;
+        }
+
+        Map<ServerPlayerEntity, Set<ServerPlayerEntity>> newTrackers = new LinkedHashMap<>(NEW_TRACKERS);
+        NEW_TRACKERS.clear();
+
+        for (Map.Entry<ServerPlayerEntity, Set<ServerPlayerEntity>> newTracker : newTrackers.entrySet()) {
+
+            ServerPlayerEntity recipient = newTracker.getKey();
+            if (recipient.isDisconnected() || !ServerPlayNetworking.canSend(recipient, SyncPlayerOriginsS2CPacket.TYPE)) {
+                continue;
+            }
+
+            List<SyncPlayerOriginsS2CPacket.Entry> entries = new ArrayList<>();
+            for (ServerPlayerEntity trackedPlayer : newTracker.getValue()) {
+
+                if (trackedPlayer == recipient || trackedPlayer.isRemoved() || !(ModComponents.ORIGIN.getNullable(trackedPlayer) instanceof PlayerOriginComponent component)) {
+                    continue;
+                }
+
+                PacketByteBuf buffer = new PacketByteBuf(Unpooled.buffer());
+                component.writeSyncPacket(buffer, recipient);
+
+                entries.add(new SyncPlayerOriginsS2CPacket.Entry(trackedPlayer.getId(), ByteBufUtil.getBytes(buffer)));
+
+            }
+
+            if (!entries.isEmpty()) {
+                ServerPlayNetworking.send(recipient, new SyncPlayerOriginsS2CPacket(entries));
+            }
+
+        }
+
+    }
+
+    /**
+     *  @return the amount of component syncs that were skipped, because the player was already marked as dirty
+     */
+    public static long getAvoidedSyncs() {
+        return AVOIDED_SYNCS.get();
+    }
+
+    private static void syncNow(PlayerEntity player) {
+        ModComponents.ORIGIN.sync(player);
+        PowerHolderComponent.KEY.sync(player);
+    }
+
+}
@@ -1,35 +1,91 @@
 package io.github.apace100.origins.component;
 
+import dev.onyxstudios.cca.api.v3.component.CopyableComponent;
 import io.github.apace100.apoli.component.PowerHolderComponent;
 import io.github.apace100.apoli.power.PowerType;
 import io.github.apace100.apoli.power.PowerTypeRegistry;
 import io.github.apace100.origins.Origins;
+import io.github.apace100.origins.networking.ModPacketsS2C;
+import io.github.apace100.origins.origin.IdPalette;
 import io.github.apace100.origins.origin.Origin;
 import io.github.apace100.origins.origin.OriginLayer;
 import io.github.apace100.origins.origin.OriginLayers;
 import io.github.apace100.origins.origin.OriginRegistry;
+import io.github.apace100.origins.origin.RegistrySnapshot;
 import io.github.apace100.origins.util.ChoseOriginCriterion;
 import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.nbt.NbtCompound;
 import net.minecraft.nbt.NbtElement;
 import net.minecraft.nbt.NbtList;
+import net.minecraft.network.PacketByteBuf;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.util.Identifier;
+import net.minecraft.world.World;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ *  Stores the origins of the player in an array that is indexed by the raw IDs of the layers (see
+ *  {@link OriginLayer#getRawId()}), so that looking up the origin of a layer doesn't need to hash anything. When the
+ *  layer registry changes, the origins are moved to the new raw IDs of their layers. Origins of layers that are no
+ *  longer registered are kept in slots after the registered layers, until they are removed (e.g: by
+ *  {@link OriginLayers} after a reload).<br>
+ *  <br>
+ *  When the player respawns, the origins are copied to the component of the new player directly, without being
+ *  serialized to NBT and without checking the powers again, since the power component is copied as well.
+ */
+public class PlayerOriginComponent implements OriginComponent, CopyableComponent<OriginComponent> {
+
+    /**
+     *  The maximum amount of syncs that can wait for their acknowledgement per recipient. Older syncs are dropped, which
+     *  only means that later syncs are built on an older state.
+     */
+    private static final int MAX_UNACKNOWLEDGED_SYNCS = 32;
+
+    /**
+     *  Shared by all components, so that an acknowledgement that was meant for the component of a player before it
+     *  respawned can't be mistaken for one of the new component.
+     */
+    private static final AtomicLong NEXT_SYNC_ID = new AtomicLong();
+
+    private OriginLayer[] layers = new OriginLayer[0];
+    private Origin[] origins = new Origin[0];
+    private BitSet assignedSlots = new BitSet();
+    private int layerCount = 0;
+    private long layersGeneration = -1;
+
+    private final LayerConditionCache conditionCache = new LayerConditionCache(this::updatePowers);
+    private final PlayerEntity player;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-
-public class PlayerOriginComponent implements OriginComponent {
+    private final Map<Identifier, Long> layerVersions = new HashMap<>();
+    private final Map<ServerPlayerEntity, SyncState> recipients = new WeakHashMap<>();
+    private final Map<ServerPlayerEntity, Deque<SyncState>> unacknowledgedSyncs = new WeakHashMap<>();
+    private long version = 0;
 
-    private final Map<OriginLayer, Origin> origins = new ConcurrentHashMap<>();
-    private final PlayerEntity player;
+    /**
+     *  The server and client palette hashes of the last sync the client couldn't apply, so that it only asks for a full
+     *  resync once for the same mismatch, instead of every time the resync fails again.
+     */
+    private long mismatchedPaletteHashes = 0;
 
     private boolean selectingOrigin = false;
     private boolean hadOriginBefore = false;
 
     private int invulnerabilityTicks = 0;
 
+    /**
+     *  The origins of the layers that were changed since the powers were last updated, from before they were changed.
+     *  Only contains anything while an edit is open.
+     */
+    private final Map<OriginLayer, Origin> ungrantedChanges = new LinkedHashMap<>();
+
+    @Nullable
+    private Transaction transaction;
+
     public PlayerOriginComponent(PlayerEntity player) {
         this.player = player;
     }
@@ -54,27 +110,72 @@ public class PlayerOriginComponent implements OriginComponent {
 
     @Override
     public boolean hasAllOrigins() {
-        return OriginLayers.getLayers()
-            .stream()
-            .allMatch(layer -> !layer.isEnabled()
-                            || (layer.getOrigins().isEmpty() || layer.getOriginOptionCount(player) == 0)
-                            || hasOrigin(layer));
+
+        refreshLayers();
+        for (int rawId = 0; rawId < layerCount; rawId++) {
+
+            OriginLayer layer = layers[rawId];
+            if (layer.isEnabled() && !hasOrigin(rawId) && !layer.getIndex().isEmpty() && layer.getOriginOptionCount(player) != 0) {
+                return false;
+            }
+
+        }
+
+        return true;
+
     }
 
     @Override
     public Map<OriginLayer, Origin> getOrigins() {
-        return origins;
+
+        Map<OriginLayer, Origin> originsByLayer = new LinkedHashMap<>();
+        forEachOrigin(originsByLayer::put);
+
+        return Collections.unmodifiableMap(originsByLayer);
+
+    }
+
+    @Override
+    public void forEachOrigin(BiConsumer<OriginLayer, Origin> action) {
+
+        refreshLayers();
+        for (int slot = assignedSlots.nextSetBit(0); slot >= 0; slot = assignedSlots.nextSetBit(slot + 1)) {
+            action.accept(layers[slot], origins[slot]);
+        }
+
+    }
+
+    @Override
+    @Nullable
+    public Origin originAt(int rawId) {
+        refreshLayers();
+        return rawId >= 0 && rawId < layerCount
+            ? origins[rawId]
+            : null;
+    }
+
+    @Override
+    public boolean hasOrigin(int rawId) {
+        Origin origin = originAt(rawId);
+        return origin != null
+            && origin != Origin.EMPTY;
     }
 
     @Override
     public boolean hasOrigin(OriginLayer layer) {
-        return origins.containsKey(layer)
-            && origins.get(layer) != Origin.EMPTY;
+        int slot = getSlot(layer);
+        return slot != -1
+            && origins[slot] != null
+            && origins[slot] != Origin.EMPTY;
     }
 
     @Override
+    @Nullable
     public Origin getOrigin(OriginLayer layer) {
-        return origins.get(layer);
+        int slot = getSlot(layer);
+        return slot != -1
+            ? origins[slot]
+            : null;
     }
 
     @Override
@@ -83,49 +184,27 @@ public class PlayerOriginComponent implements OriginComponent {
     }
 
     @Override
-    public void removeLayer(OriginLayer layer) {
+    public OriginComponent.Edit edit() {
+        transaction = new Transaction(transaction);
+        return transaction;
+    }
 
-        Origin oldOrigin = getOrigin(layer);
-        if (oldOrigin != null) {
-            PowerHolderComponent.KEY.get(player).removeAllPowersFromSource(oldOrigin.getIdentifier());
+    @Override
+    public void removeLayer(OriginLayer layer) {
+        if (transaction != null) {
+            transaction.removeLayer(layer);
+        } else {
+            new Transaction(null).removeLayer(layer).apply();
         }
-
-        origins.remove(layer);
-
     }
 
     @Override
     public void setOrigin(OriginLayer layer, Origin origin) {
-
-        Origin oldOrigin = getOrigin(layer);
-        if (origin == oldOrigin) {
-            return;
-        }
-
-        PowerHolderComponent powerComponent = PowerHolderComponent.KEY.get(player);
-        if (oldOrigin != null) {
-
-            if (!oldOrigin.getIdentifier().equals(origin.getIdentifier())) {
-                powerComponent.removeAllPowersFromSource(oldOrigin.getIdentifier());
-            }
-
-            else if (!oldOrigin.toJson().equals(origin.toJson())) {
-                revokeRemovedPowers(origin, powerComponent);
-            }
-
-        }
-
-        grantPowersFromOrigin(origin, powerComponent);
-        this.origins.put(layer, origin);
-
-        if (this.hasAllOrigins()) {
-            this.hadOriginBefore = true;
-        }
-
-        if (player instanceof ServerPlayerEntity spe) {
-            ChoseOriginCriterion.INSTANCE.trigger(spe, origin);
+        if (transaction != null) {
+            transaction.setOrigin(layer, origin);
+        } else {
+            new Transaction(null).setOrigin(layer, origin).apply();
         }
-
     }
 
     private void grantPowersFromOrigin(Origin origin, PowerHolderComponent powerComponent) {
@@ -136,11 +215,15 @@ public class PlayerOriginComponent implements OriginComponent {
             .forEach(pt -> powerComponent.addPower(pt, sourceId));
     }
 
-    private void revokeRemovedPowers(Origin origin, PowerHolderComponent powerComponent) {
-        Identifier sourceId = origin.getIdentifier();
+    /**
+     *  Removes the powers of the specified source that the specified origin doesn't grant, or all of them if there is
+     *  no origin with the ID of the source anymore.
+     */
+    private void revokeRemovedPowers(Identifier sourceId, @Nullable Origin origin, PowerHolderComponent powerComponent) {
+        Set<Identifier> powerIds = origin != null ? origin.getPowerIds() : Set.of();
         powerComponent.getPowersFromSource(sourceId)
             .stream()
-            .filter(pt -> !origin.hasPowerType(pt))
+            .filter(pt -> !powerIds.contains(pt.getIdentifier()))
             .forEach(pt -> powerComponent.removePower(pt, sourceId));
     }
 
@@ -152,55 +235,60 @@ public class PlayerOriginComponent implements OriginComponent {
     }
 
     @Override
-    public void readFromNbt(@NotNull NbtCompound compoundTag) {
+    public void copyFrom(OriginComponent other) {
 
-        if (player == null) {
-            Origins.LOGGER.error("Player was null in PlayerOriginComponent#fromTag! This is not supposed to happen D:");
-            return;
-        }
+        if (!(other instanceof PlayerOriginComponent otherComponent)) {
 
-        PowerHolderComponent powerComponent = PowerHolderComponent.KEY.get(player);
-        origins.clear();
+            NbtCompound otherNbt = new NbtCompound();
+            other.writeToNbt(otherNbt);
 
-        //  Migrate origin data from old versions
-        if (compoundTag.contains("Origin")) {
-            try {
+            readFromNbt(otherNbt);
+            return;
 
-                OriginLayer defaultOriginLayer = OriginLayers.getLayer(Origins.identifier("origin"));
-                origins.put(defaultOriginLayer, OriginRegistry.get(new Identifier(compoundTag.getString("Origin"))));
+        }
 
-            } catch (Exception ignored) {
-                Origins.LOGGER.warn("Player {} had old origin which could not be migrated: {}", player.getName().getString(), compoundTag.getString("Origin"));
-            }
-        } else {
+        otherComponent.refreshLayers();
 
-            NbtList originLayersNbt = compoundTag.getList("OriginLayers", NbtElement.COMPOUND_TYPE);
-            for (int i = 0; i < originLayersNbt.size(); i++) {
+        layers = otherComponent.layers.clone();
+        origins = otherComponent.origins.clone();
+        assignedSlots = (BitSet) otherComponent.assignedSlots.clone();
+        layerCount = otherComponent.layerCount;
+        layersGeneration = otherComponent.layersGeneration;
 
-                NbtCompound originLayerNbt = originLayersNbt.getCompound(i);
-                try {
+        selectingOrigin = otherComponent.selectingOrigin;
+        hadOriginBefore = otherComponent.hadOriginBefore;
 
-                    Identifier layerId = new Identifier(originLayerNbt.getString("Layer"));
-                    Identifier originId = new Identifier(originLayerNbt.getString("Origin"));
+        conditionCache.invalidate();
+        forgetRecipients();
 
-                    OriginLayer layer = OriginLayers.getLayer(layerId);
-                    Origin origin = OriginRegistry.get(originId);
+    }
 
-                    origins.put(layer, origin);
+    @Override
+    public void readFromNbt(@NotNull NbtCompound compoundTag) {
 
-                    if (layer.contains(origin) || origin.isSpecial()) {
-                        continue;
-                    }
+        if (player == null) {
+            Origins.LOGGER.error("Player was null in PlayerOriginComponent#fromTag! This is not supposed to happen D:");
+            return;
+        }
 
-                    Origins.LOGGER.warn("Origin \"{}\" is not in origin layer \"{}\" and is not considered special, but was found on player {}!", originId, layerId, player.getName().getString());
+        PowerHolderComponent powerComponent = PowerHolderComponent.KEY.get(player);
+        clearOrigins();
+        ungrantedChanges.clear();
+        conditionCache.invalidate();
+        forgetRecipients();
 
-                    powerComponent.removeAllPowersFromSource(originId);
-                    origins.put(layer, Origin.EMPTY);
+        //  Migrate origin data from old versions, which is skipped entirely if the data is up-to-date
+        PlayerOriginDataMigration.migrate(compoundTag);
+        boolean hasLegacyPowers = PlayerOriginDataMigration.getDataVersion(compoundTag) < PlayerOriginDataMigration.POWERS_DATA_VERSION;
 
-                } catch (Exception e) {
-                    Origins.LOGGER.error("There was a problem trying to read origin NBT data of player {}: {}", player.getName().getString(), e.getMessage());
-                }
+        if (CompactOriginsNbt.isPresent(compoundTag)) {
+            CompactOriginsNbt.forEach(compoundTag, (layerId, originId) -> readOrigin(layerId, originId, powerComponent));
+        } else {
 
+            NbtList originLayersNbt = compoundTag.getList("OriginLayers", NbtElement.COMPOUND_TYPE);
+            for (int i = 0; i < originLayersNbt.size(); i++) {
+                NbtCompound originLayerNbt = originLayersNbt.getCompound(i);
+                readOrigin(originLayerNbt.getString("Layer"), originLayerNbt.getString("Origin"), powerComponent);
             }
 
         }
@@ -212,19 +300,14 @@ public class PlayerOriginComponent implements OriginComponent {
             return;
         }
 
-        for (Origin origin : origins.values()) {
-            //  Grant powers only if the player doesn't have them yet from the specific Origin source.
-            //  Needed in case the origin was set before the update to Apoli happened.
-            grantPowersFromOrigin(origin, powerComponent);
-        }
-
-        for (Origin origin : origins.values()) {
-            revokeRemovedPowers(origin, powerComponent);
-        }
+        //  Grant powers only if the player doesn't have them yet from the specific Origin source.
+        //  Needed in case the origin was set before the update to Apoli happened.
+        forEachOrigin((layer, origin) -> grantPowersFromOrigin(origin, powerComponent));
+        forEachOrigin((layer, origin) -> revokeRemovedPowers(origin.getIdentifier(), origin, powerComponent));
 
         //  Compatibility with old worlds. Load power data from Origins' NBT, whereas in new versions, power data is
         //  stored in Apoli's NBT
-        if (!compoundTag.contains("Powers")) {
+        if (!hasLegacyPowers) {
             return;
         }
 
@@ -261,6 +344,35 @@ public class PlayerOriginComponent implements OriginComponent {
 
     }
 
+    private void readOrigin(String layerIdString, String originIdString, PowerHolderComponent powerComponent) {
+        try {
+
+            Identifier layerId = new Identifier(layerIdString);
+            Identifier originId = new Identifier(originIdString);
+
+            OriginLayer layer = OriginLayers.getLayer(layerId);
+            Origin origin = OriginRegistry.get(originId);
+
+            putOrigin(layer, origin);
+
+            if (layer.contains(origin) || origin.isSpecial()) {
+                return;
+            }
+
+            Origins.LOGGER.warn("Origin \"{}\" is not in origin layer \"{}\" and is not considered special, but was found on player {}!", originId, layerId, player.getName().getString());
+
+            powerComponent.removeAllPowersFromSource(originId);
+            putOrigin(layer, Origin.EMPTY);
+
+        } catch (Exception e) {
+            Origins.LOGGER.error("There was a problem trying to read origin NBT data of player {}: {}", player.getName().getString(), e.getMessage());
+        }
+    }
+
+    LayerConditionCache getConditionCache() {
+        return conditionCache;
+    }
+
     @Override
     public void onPowersRead() {
         // NO-OP
@@ -269,19 +381,35 @@ public class PlayerOriginComponent implements OriginComponent {
     @Override
     public void writeToNbt(@NotNull NbtCompound compoundTag) {
 
+        CompactOriginsNbt originsNbt = new CompactOriginsNbt();
         NbtList originLayersNbt = new NbtList();
-        origins.forEach((layer, origin) -> {
 
-            NbtCompound originLayerNbt = new NbtCompound();
+        forEachOrigin((layer, origin) -> {
+
+            String layerId = layer.getIdentifier().toString();
+            String originId = origin.getIdentifier().toString();
+
+            originsNbt.add(layerId, originId);
+            if (Origins.config.writeLegacyOriginData) {
+
+                NbtCompound originLayerNbt = new NbtCompound();
+
+                originLayerNbt.putString("Layer", layerId);
+                originLayerNbt.putString("Origin", originId);
 
-            originLayerNbt.putString("Layer", layer.getIdentifier().toString());
-            originLayerNbt.putString("Origin", origin.getIdentifier().toString());
+                originLayersNbt.add(originLayerNbt);
 
-            originLayersNbt.add(originLayerNbt);
+            }
 
         });
 
-        compoundTag.put("OriginLayers", originLayersNbt);
+        //  Read by versions of Origins before the compact format, so that downgrading doesn't lose the origins
+        if (Origins.config.writeLegacyOriginData) {
+            compoundTag.put("OriginLayers", originLayersNbt);
+        }
+
+        originsNbt.writeTo(compoundTag);
+        compoundTag.putInt(PlayerOriginDataMigration.DATA_VERSION_KEY, PlayerOriginDataMigration.CURRENT_DATA_VERSION);
         compoundTag.putBoolean("SelectingOrigin", selectingOrigin);
         compoundTag.putBoolean("HadOriginBefore", hadOriginBefore);
 
@@ -292,4 +420,512 @@ public class PlayerOriginComponent implements OriginComponent {
         OriginComponent.sync(this.player);
     }
 
+    /**
+     *  Other players only receive this component once they started tracking the player and were sent its origins by
+     *  {@link OriginSyncScheduler}, and stop receiving it once they stop tracking the player.
+     */
+    @Override
+    public boolean shouldSyncWith(ServerPlayerEntity recipient) {
+        return recipient == player || recipients.containsKey(recipient);
+    }
+
+    /**
+     *  Writes only the layers that changed since the last sync the recipient acknowledged, or all layers if it didn't
+     *  acknowledge any (e.g: because it just started tracking the player). Syncs only become the state later syncs are
+     *  built on once the recipient acknowledged them (see {@link #acknowledgeSync(ServerPlayerEntity, long, boolean)}),
+     *  so a sync the client couldn't apply is never skipped over. The layers and origins are referred to by their raw IDs
+     *  in the {@link IdPalette} of their registries, together with the hash of the palettes, so that the client can tell
+     *  whether the raw IDs still refer to the same layers and origins.
+     */
+    @Override
+    public void writeSyncPacket(PacketByteBuf buf, ServerPlayerEntity recipient) {
+
+        SyncState prevState = recipients.get(recipient);
+        boolean fullSync = prevState == null
+            || prevState.world() != player.getWorld()
+            || prevState.layersGeneration() != OriginLayers.getGeneration();
+
+        IdPalette layerPalette = OriginLayers.snapshot().palette();
+        IdPalette originPalette = OriginRegistry.snapshot().palette();
+
+        long syncId = NEXT_SYNC_ID.incrementAndGet();
+
+        buf.writeBoolean(fullSync);
+        buf.writeVarLong(syncId);
+        buf.writeInt(OriginRegistry.getPaletteHash());
+        buf.writeBoolean(selectingOrigin);
+        buf.writeBoolean(hadOriginBefore);
+
+        //  Layers that are no longer registered are left out, since the recipient doesn't know them either
+        List<OriginLayer> syncedLayers = new ArrayList<>();
+        if (fullSync) {
+            forEachOrigin((layer, origin) -> {
+                if (layerPalette.getRawId(layer.getIdentifier()) != -1) {
+                    syncedLayers.add(layer);
+                }
+            });
+        } else {
+            layerVersions.forEach((layerId, layerVersion) -> {
+
+                OriginLayer layer = OriginLayers.getNullableLayer(layerId);
+                if (layer != null && layerVersion > prevState.version()) {
+                    syncedLayers.add(layer);
+                }
+
+            });
+        }
+
+        buf.writeCollection(syncedLayers, (layerBuf, layer) -> {
+
+            Origin origin = getOrigin(layer);
+
+            layerBuf.writeVarInt(layerPalette.getRawId(layer.getIdentifier()));
+            layerBuf.writeVarInt(origin != null ? originPalette.getRawId(origin.getIdentifier()) : -1);
+
+        });
+
+        recipients.putIfAbsent(recipient, SyncState.UNKNOWN);
+        Deque<SyncState> pendingSyncs = unacknowledgedSyncs.computeIfAbsent(recipient, k -> new ArrayDeque<>());
+
+        if (pendingSyncs.size() >= MAX_UNACKNOWLEDGED_SYNCS) {
+            pendingSyncs.removeFirst();
+        }
+
+        pendingSyncs.addLast(new SyncState(syncId, version, player.getWorld(), OriginLayers.getGeneration()));
+
+    }
+
+    /**
+     *  Makes the specified sync the state later syncs with the recipient are built on, if the recipient applied it.
+     *  Otherwise, the recipient is sent all layers again with the next sync, which happens right away.
+     */
+    public void acknowledgeSync(ServerPlayerEntity recipient, long syncId, boolean applied) {
+
+        Deque<SyncState> pendingSyncs = unacknowledgedSyncs.get(recipient);
+        if (!recipients.containsKey(recipient) || pendingSyncs == null) {
+            return;
+        }
+
+        if (!applied) {
+
+            recipients.put(recipient, SyncState.UNKNOWN);
+            pendingSyncs.clear();
+
+            sync();
+            return;
+
+        }
+
+        //  Syncs are acknowledged in the order they were sent, so any sync before this one will never be acknowledged
+        while (!pendingSyncs.isEmpty() && pendingSyncs.peekFirst().syncId() <= syncId) {
+
+            SyncState state = pendingSyncs.removeFirst();
+            if (state.syncId() == syncId) {
+                recipients.put(recipient, state);
+            }
+
+        }
+
+    }
+
+    @Override
+    public void applySyncPacket(PacketByteBuf buf) {
+
+        boolean fullSync = buf.readBoolean();
+        long syncId = buf.readVarLong();
+        int paletteHash = buf.readInt();
+
+        selectingOrigin = buf.readBoolean();
+        hadOriginBefore = buf.readBoolean();
+
+        int currentPaletteHash = OriginRegistry.getPaletteHash();
+        if (paletteHash != currentPaletteHash) {
+
+            long paletteHashes = (long) paletteHash << 32 | currentPaletteHash & 0xFFFFFFFFL;
+            if (paletteHashes != mismatchedPaletteHashes) {
+                Origins.LOGGER.warn("Received origin data of player {} that refers to other origins or layers than the current ones, requesting a full resync...", player.getName().getString());
+                ModPacketsS2C.acknowledgeOriginSync(player, syncId, false);
+            }
+
+            mismatchedPaletteHashes = paletteHashes;
+            return;
+
+        }
+
+        if (fullSync) {
+            clearOrigins();
+        }
+
+        int layersSize = buf.readVarInt();
+        for (int i = 0; i < layersSize; i++) {
+            applySyncedOrigin(buf.readVarInt(), buf.readVarInt());
+        }
+
+        conditionCache.invalidate();
+        mismatchedPaletteHashes = 0;
+
+        ModPacketsS2C.acknowledgeOriginSync(player, syncId, true);
+
+    }
+
+    /**
+     *  @param originRawId  the raw ID of the origin of the layer, or -1 if the layer has no origin
+     */
+    private void applySyncedOrigin(int layerRawId, int originRawId) {
+
+        RegistrySnapshot<OriginLayer> layerSnapshot = OriginLayers.snapshot();
+        RegistrySnapshot<Origin> originSnapshot = OriginRegistry.snapshot();
+
+        Identifier layerId = layerSnapshot.palette().getId(layerRawId);
+        OriginLayer layer = layerId != null ? layerSnapshot.get(layerId) : null;
+
+        if (layer == null) {
+            Origins.LOGGER.warn("Received origin data of unknown origin layer with raw ID {} for player {}, skipping...", layerRawId, player.getName().getString());
+            return;
+        }
+
+        Identifier originId = originSnapshot.palette().getId(originRawId);
+        Origin origin = originId != null ? originSnapshot.get(originId) : null;
+
+        if (originRawId == -1) {
+            removeOrigin(layer);
+        } else if (origin != null) {
+            putOrigin(layer, origin);
+        } else {
+            Origins.LOGGER.warn("Received unknown origin with raw ID {} in origin layer \"{}\" for player {}, skipping...", originRawId, layerId, player.getName().getString());
+        }
+
+    }
+
+    /**
+     *  @return the slot of the specified layer, or -1 if it has none. The raw ID of the layer is used if it still refers
+     *          to the layer; otherwise (e.g: for layers that are no longer registered) the slots are searched.
+     */
+    private int getSlot(OriginLayer layer) {
+
+        refreshLayers();
+
+        int rawId = layer.getRawId();
+        if (rawId >= 0 && rawId < layerCount && layers[rawId] == layer) {
+            return rawId;
+        }
+
+        for (int slot = 0; slot < layers.length; slot++) {
+            if (layer.equals(layers[slot])) {
+                return slot;
+            }
+        }
+
+        return -1;
+
+    }
+
+    private void putOrigin(OriginLayer layer, Origin origin) {
+
+        int slot = getSlot(layer);
+        if (slot == -1) {
+
+            slot = layers.length;
+
+            layers = Arrays.copyOf(layers, slot + 1);
+            origins = Arrays.copyOf(origins, slot + 1);
+            layers[slot] = layer;
+
+        }
+
+        origins[slot] = origin;
+        assignedSlots.set(slot);
+
+    }
+
+    private void removeOrigin(OriginLayer layer) {
+
+        int slot = getSlot(layer);
+        if (slot != -1) {
+            origins[slot] = null;
+            assignedSlots.clear(slot);
+        }
+
+    }
+
+    private void clearOrigins() {
+        Arrays.fill(origins, null);
+        assignedSlots.clear();
+    }
+
+    /**
+     *  Moves the origins to the raw IDs of their layers in the current layer registry, if it changed since the last
+     *  time this was called.
+     */
+    private void refreshLayers() {
+
+        RegistrySnapshot<OriginLayer> snapshot = OriginLayers.snapshot();
+        if (snapshot.generation() == layersGeneration) {
+            return;
+        }
+
+        IdPalette palette = snapshot.palette();
+        int newLayerCount = palette.size();
+
+        int unregisteredCount = 0;
+        for (int slot = assignedSlots.nextSetBit(0); slot >= 0; slot = assignedSlots.nextSetBit(slot + 1)) {
+            if (palette.getRawId(layers[slot].getIdentifier()) == -1) {
+                unregisteredCount++;
+            }
+        }
+
+        OriginLayer[] newLayers = new OriginLayer[newLayerCount + unregisteredCount];
+        Origin[] newOrigins = new Origin[newLayers.length];
+        BitSet newAssignedSlots = new BitSet(newLayers.length);
+
+        for (int rawId = 0; rawId < newLayerCount; rawId++) {
+            newLayers[rawId] = snapshot.get(palette.getId(rawId));
+        }
+
+        int unregisteredSlot = newLayerCount;
+        for (int slot = assignedSlots.nextSetBit(0); slot >= 0; slot = assignedSlots.nextSetBit(slot + 1)) {
+
+            int newSlot = palette.getRawId(layers[slot].getIdentifier());
+            if (newSlot == -1) {
+                newSlot = unregisteredSlot++;
+                newLayers[newSlot] = layers[slot];
+            }
+
+            newOrigins[newSlot] = origins[slot];
+            newAssignedSlots.set(newSlot);
+
+        }
+
+        layers = newLayers;
+        origins = newOrigins;
+        assignedSlots = newAssignedSlots;
+        layerCount = newLayerCount;
+        layersGeneration = snapshot.generation();
+
+    }
+
+    /**
+     *  Makes the next sync with the specified recipient send all layers, since it no longer has the data of this
+     *  component (e.g: because it stopped tracking the player).
+     */
+    public void forgetRecipient(ServerPlayerEntity recipient) {
+        recipients.remove(recipient);
+        unacknowledgedSyncs.remove(recipient);
+    }
+
+    /**
+     *  Makes the next sync with every recipient send all layers. The recipients themselves are kept, since they still
+     *  track the player.
+     */
+    private void forgetRecipients() {
+        recipients.replaceAll((recipient, state) -> SyncState.UNKNOWN);
+        unacknowledgedSyncs.clear();
+        layerVersions.clear();
+    }
+
+    private void markChanged(OriginLayer layer) {
+        layerVersions.put(layer.getIdentifier(), ++version);
+    }
+
+    private void changeOrigin(OriginLayer layer, @Nullable Origin origin) {
+
+        Origin oldOrigin = getOrigin(layer);
+        if (!ungrantedChanges.containsKey(layer)) {
+            ungrantedChanges.put(layer, oldOrigin);
+        }
+
+        if (origin != null) {
+            putOrigin(layer, origin);
+        } else {
+            removeOrigin(layer);
+        }
+
+        conditionCache.invalidate();
+        markChanged(layer);
+
+    }
+
+    /**
+     *  Grants the powers of the new origins and revokes the powers of the origins that were replaced, of the layers that
+     *  were changed since the powers were last updated.
+     */
+    private void updatePowers() {
+
+        if (ungrantedChanges.isEmpty()) {
+            return;
+        }
+
+        Map<OriginLayer, Origin> changedLayers = new LinkedHashMap<>(ungrantedChanges);
+        ungrantedChanges.clear();
+
+        PowerHolderComponent powerComponent = PowerHolderComponent.KEY.get(player);
+        Map<Identifier, Origin> currentOrigins = new HashMap<>();
+        Set<Identifier> replacedSourceIds = new LinkedHashSet<>();
+
+        forEachOrigin((layer, origin) -> currentOrigins.put(origin.getIdentifier(), origin));
+        changedLayers.forEach((layer, oldOrigin) -> {
+
+            Origin origin = getOrigin(layer);
+            if (origin == oldOrigin) {
+                return;
+            }
+
+            if (origin != null) {
+                grantPowersFromOrigin(origin, powerComponent);
+            }
+
+            if (oldOrigin != null && (origin == null || !oldOrigin.getIdentifier().equals(origin.getIdentifier()) || !oldOrigin.isSameDefinition(origin))) {
+                replacedSourceIds.add(oldOrigin.getIdentifier());
+            }
+
+        });
+
+        //  Only revoke the powers after the new ones were granted, so that powers which the old and new origins have in
+        //  common keep their instance (and its state) instead of being removed and added again
+        for (Identifier sourceId : replacedSourceIds) {
+            revokeRemovedPowers(sourceId, currentOrigins.get(sourceId), powerComponent);
+        }
+
+    }
+
+    /**
+     *  Changes the origins of the layers right away, but only updates the powers once the outermost edit is committed,
+     *  or before a condition of a layer is evaluated (see {@link LayerConditionCache}), so that the powers are updated
+     *  once for all layers that were changed in between. Every edit remembers the origins the layers it changed had
+     *  before, so that it can restore them if it is closed without being committed.
+     */
+    private final class Transaction implements OriginComponent.Edit {
+
+        @Nullable
+        private final Transaction outer;
+        private final Map<OriginLayer, Origin> previousOrigins = new LinkedHashMap<>();
+
+        private boolean committed = false;
+        private boolean closed = false;
+
+        private Transaction(@Nullable Transaction outer) {
+            this.outer = outer;
+        }
+
+        @Override
+        public Transaction setOrigin(OriginLayer layer, Origin origin) {
+
+            Origin oldOrigin = getOrigin(layer);
+            if (origin == oldOrigin) {
+                return this;
+            }
+
+            remember(layer, oldOrigin);
+            changeOrigin(layer, origin);
+
+            return this;
+
+        }
+
+        @Override
+        public Transaction removeLayer(OriginLayer layer) {
+
+            remember(layer, getOrigin(layer));
+            changeOrigin(layer, null);
+
+            return this;
+
+        }
+
+        @Override
+        public void commit() {
+            committed = true;
+        }
+
+        @Override
+        public void close() {
+
+            if (closed) {
+                return;
+            }
+
+            closed = true;
+            transaction = outer;
+
+            if (!committed) {
+                rollback();
+            } else if (outer != null) {
+                previousOrigins.forEach(outer::remember);
+            } else {
+                apply();
+                sync();
+            }
+
+        }
+
+        private void remember(OriginLayer layer, @Nullable Origin oldOrigin) {
+            if (!previousOrigins.containsKey(layer)) {
+                previousOrigins.put(layer, oldOrigin);
+            }
+        }
+
+        /**
+         *  Restores the origins of the layers this edit changed. The powers are only restored if this is the outermost
+         *  edit; otherwise, they are restored together with the changes of the outer edit.
+         */
+        private void rollback() {
+
+            if (previousOrigins.isEmpty()) {
+                return;
+            }
+
+            previousOrigins.forEach(PlayerOriginComponent.this::changeOrigin);
+            previousOrigins.clear();
+
+            if (outer == null) {
+                updatePowers();
+                sync();
+            }
+
+        }
+
+        /**
+         *  Updates the powers of the changed layers, and triggers the criteria of the new origins.
+         */
+        private void apply() {
+
+            if (previousOrigins.isEmpty()) {
+                return;
+            }
+
+            updatePowers();
+            if (hasAllOrigins()) {
+                hadOriginBefore = true;
+            }
+
+            if (player instanceof ServerPlayerEntity spe) {
+                previousOrigins.forEach((layer, oldOrigin) -> {
+
+                    Origin origin = getOrigin(layer);
+                    if (origin != null && origin != oldOrigin) {
+                        ChoseOriginCriterion.INSTANCE.trigger(spe, origin);
+                    }
+
+                });
+            }
+
+            previousOrigins.clear();
+
+        }
+
+    }
+
+    /**
+     *  @param syncId               the ID of the sync that sent this state
+     *  @param version              the version of this component the recipient was synced with
+     *  @param world                the world the player was in when it was synced, since changing worlds recreates
+     *                              the player (and its components) on the client of the player
+     *  @param layersGeneration     the generation of the layer registry at that time, since a reload may replace layers
+     */
+    private record SyncState(long syncId, long version, @Nullable World world, long layersGeneration) {
+
+        static final SyncState UNKNOWN = new SyncState(-1, -1, null, -1);
+
+    }
+
 }
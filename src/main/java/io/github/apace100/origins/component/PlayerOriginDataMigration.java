@@ -0,0 +1,268 @@
+package io.github.apace100.origins.component;
+
+import io.github.apace100.origins.Origins;
+import io.github.apace100.origins.registry.ModComponents;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.nbt.NbtList;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.Util;
+import net.minecraft.util.WorldSavePath;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ *  Migrates the NBT of {@link PlayerOriginComponent} from older versions of Origins. The NBT is stamped with the
+ *  version of the data it contains, so that every migration only runs once per player; NBT that is up-to-date is
+ *  read without checking for any data of older versions.<br>
+ *  <br>
+ *  The data versions are:
+ *  <ol start="0">
+ *      <li>Data without a data version, which may contain a single origin in the {@code Origin} key, and the data of
+ *      powers in the {@code Powers} list.</li>
+ *      <li>The single origin was moved to the origin layer {@code origins:origin} of the {@code OriginLayers} list.</li>
+ *      <li>The data of powers was moved to the power component of Apoli.</li>
+ *      <li>The {@code OriginLayers} list was replaced by the compact encoding of {@link CompactOriginsNbt}.</li>
+ *  </ol>
+ *  The data of powers can only be moved once the player is loaded, so NBT that contains any stays at data version 1
+ *  until then. The {@code OriginLayers} list is still read if present, so that such NBT doesn't need to be converted
+ *  before the player is loaded.<br>
+ *  <br>
+ *  Versions of Origins before data version 3 only read the {@code OriginLayers} list, so it is kept (and written
+ *  alongside the compact encoding) while {@link io.github.apace100.origins.Origins.ServerConfig#writeLegacyOriginData}
+ *  is enabled, which makes it possible to downgrade without losing the origins of players.
+ */
+public final class PlayerOriginDataMigration {
+
+    public static final String DATA_VERSION_KEY = "DataVersion";
+    public static final int CURRENT_DATA_VERSION = 3;
+
+    /**
+     *  The data version from which on the data of powers is no longer stored in the origin component.
+     */
+    public static final int POWERS_DATA_VERSION = 2;
+
+    private static final AtomicReference<Set<UUID>> SKIPPED_PLAYERS = new AtomicReference<>();
+
+    public static int getDataVersion(NbtCompound componentNbt) {
+        return componentNbt.getInt(DATA_VERSION_KEY);
+    }
+
+    /**
+     *  Applies the migrations that only need the NBT itself.
+     *
+     *  @return whether the NBT was changed
+     */
+    public static boolean migrate(NbtCompound componentNbt) {
+
+        int prevDataVersion = getDataVersion(componentNbt);
+        if (prevDataVersion >= CURRENT_DATA_VERSION) {
+            return false;
+        }
+
+        int dataVersion = prevDataVersion;
+        if (dataVersion < 1) {
+            migrateSingleOrigin(componentNbt);
+            dataVersion = 1;
+        }
+
+        if (dataVersion < POWERS_DATA_VERSION && !componentNbt.contains("Powers")) {
+            dataVersion = POWERS_DATA_VERSION;
+        }
+
+        if (dataVersion == 2) {
+            migrateToCompactOrigins(componentNbt);
+            dataVersion = 3;
+        }
+
+        componentNbt.putInt(DATA_VERSION_KEY, dataVersion);
+        return dataVersion != prevDataVersion;
+
+    }
+
+    private static void migrateSingleOrigin(NbtCompound componentNbt) {
+
+        if (!componentNbt.contains("Origin", NbtElement.STRING_TYPE)) {
+            return;
+        }
+
+        NbtCompound originLayerNbt = new NbtCompound();
+        NbtList originLayersNbt = new NbtList();
+
+        originLayerNbt.putString("Layer", Origins.identifier("origin").toString());
+        originLayerNbt.putString("Origin", componentNbt.getString("Origin"));
+        originLayersNbt.add(originLayerNbt);
+
+        componentNbt.put("OriginLayers", originLayersNbt);
+        componentNbt.remove("Origin");
+
+    }
+
+    private static void migrateToCompactOrigins(NbtCompound componentNbt) {
+
+        CompactOriginsNbt originsNbt = new CompactOriginsNbt();
+        NbtList originLayersNbt = componentNbt.getList("OriginLayers", NbtElement.COMPOUND_TYPE);
+
+        for (int i = 0; i < originLayersNbt.size(); i++) {
+            NbtCompound originLayerNbt = originLayersNbt.getCompound(i);
+            originsNbt.add(originLayerNbt.getString("Layer"), originLayerNbt.getString("Origin"));
+        }
+
+        originsNbt.writeTo(componentNbt);
+        if (!Origins.config.writeLegacyOriginData) {
+            componentNbt.remove("OriginLayers");
+        }
+
+    }
+
+    /**
+     *  Keeps track of the players that join while the player data files are being migrated, so that their files are
+     *  skipped from then on.
+     */
+    public static void register() {
+        ServerPlayConnectionEvents.JOIN.register((handler, sender, server) -> {
+
+            Set<UUID> skippedPlayers = SKIPPED_PLAYERS.get();
+            if (skippedPlayers != null) {
+                skippedPlayers.add(handler.player.getUuid());
+            }
+
+        });
+    }
+
+    /**
+     *  Migrates the origin component in every player data file of the server on an I/O worker thread, so that the
+     *  server doesn't stall while the files are read and written. The files of players that are online at any point
+     *  during the migration are skipped, since the server may save them at any time. Has to be called on the server
+     *  thread.
+     *
+     *  @return the result of the migration, or null if another migration is still running
+     */
+    @Nullable
+    public static CompletableFuture<Result> migratePlayerDataAsync(MinecraftServer server) {
+
+        Set<UUID> skippedPlayers = ConcurrentHashMap.newKeySet();
+        if (!SKIPPED_PLAYERS.compareAndSet(null, skippedPlayers)) {
+            return null;
+        }
+
+        server.getPlayerManager().getPlayerList().forEach(player -> skippedPlayers.add(player.getUuid()));
+        Path playerDataDir = server.getSavePath(WorldSavePath.PLAYERDATA);
+
+        return CompletableFuture
+            .supplyAsync(() -> {
+                try {
+                    return migratePlayerData(playerDataDir, skippedPlayers);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, Util.getIoWorkerExecutor())
+            .whenComplete((result, throwable) -> SKIPPED_PLAYERS.set(null));
+
+    }
+
+    /**
+     *  Migrates the origin component in every player data file of the specified directory, so that the players don't
+     *  need to be migrated when they join. Meant to be run while the players aren't online, since their data would be
+     *  overwritten when they are saved.
+     *
+     *  @param playerDataDir    the directory of the player data files of a world
+     *  @param skippedPlayers   the UUIDs of the players whose files should not be touched (e.g: because they are online),
+     *                          which is checked again right before every file is replaced, so it may change while the
+     *                          files are being migrated
+     */
+    public static Result migratePlayerData(Path playerDataDir, Set<UUID> skippedPlayers) throws IOException {
+
+        int migrated = 0;
+        int upToDate = 0;
+        int failed = 0;
+
+        if (!Files.isDirectory(playerDataDir)) {
+            return new Result(migrated, upToDate, failed);
+        }
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(playerDataDir, "*.dat")) {
+            for (Path file : files) {
+
+                String fileName = file.getFileName().toString();
+                try {
+
+                    UUID playerUuid = UUID.fromString(fileName.substring(0, fileName.length() - ".dat".length()));
+                    if (skippedPlayers.contains(playerUuid)) {
+                        continue;
+                    }
+
+                    if (migratePlayerDataFile(file, playerUuid, skippedPlayers)) {
+                        migrated++;
+                    } else if (!skippedPlayers.contains(playerUuid)) {
+                        upToDate++;
+                    }
+
+                } catch (IllegalArgumentException ignored) {
+                    //  Not a player data file
+                } catch (IOException e) {
+                    Origins.LOGGER.warn("Could not migrate origin data in player data file \"{}\": {}", fileName, e.getMessage());
+                    failed++;
+                }
+
+            }
+        }
+
+        return new Result(migrated, upToDate, failed);
+
+    }
+
+    private static boolean migratePlayerDataFile(Path file, UUID playerUuid, Set<UUID> skippedPlayers) throws IOException {
+
+        NbtCompound playerNbt = NbtIo.readCompressed(file.toFile());
+        NbtCompound componentsNbt = playerNbt.getCompound("cardinal_components");
+
+        String componentKey = ModComponents.ORIGIN.getId().toString();
+        if (!componentsNbt.contains(componentKey, NbtElement.COMPOUND_TYPE) || !migrate(componentsNbt.getCompound(componentKey))) {
+            return false;
+        }
+
+        //  Write to a temporary file first, so that the player data isn't lost if writing fails halfway
+        File tempFile = File.createTempFile(file.getFileName().toString(), ".tmp", file.getParent().toFile());
+        try {
+
+            NbtIo.writeCompressed(playerNbt, tempFile);
+
+            //  The player may have joined while the file was being migrated
+            if (skippedPlayers.contains(playerUuid)) {
+                return false;
+            }
+
+            Files.move(tempFile.toPath(), file, StandardCopyOption.REPLACE_EXISTING);
+            return true;
+
+        } finally {
+            Files.deleteIfExists(tempFile.toPath());
+        }
+
+    }
+
+    /**
+     *  @param migrated the amount of files that were migrated
+     *  @param upToDate the amount of files that were already up-to-date (or didn't contain origin data)
+     *  @param failed   the amount of files that could not be read or written
+     */
+    public record Result(int migrated, int upToDate, int failed) {
+
+    }
+
+}
@@ -1,6 +1,7 @@
 package io.github.apace100.origins.content;
 
 import io.github.apace100.origins.component.OriginComponent;
+import io.github.apace100.origins.component.OriginSyncScheduler;
 import io.github.apace100.origins.networking.packet.s2c.OpenChooseOriginScreenS2CPacket;
 import io.github.apace100.origins.origin.Origin;
 import io.github.apace100.origins.origin.OriginLayer;
@@ -43,26 +44,30 @@ public class OrbOfOriginItem extends Item {
 
             OriginComponent component = ModComponents.ORIGIN.get(user);
             Map<OriginLayer, Origin> targets = getTargets(stack);
-            if(!targets.isEmpty()) {
-                for(Map.Entry<OriginLayer, Origin> target : targets.entrySet()) {
-                    component.setOrigin(target.getKey(), target.getValue());
-                }
-            } else {
-                for (OriginLayer layer : OriginLayers.getLayers()) {
-                    if(layer.isEnabled()) {
-                        component.setOrigin(layer, Origin.EMPTY);
+
+            try (OriginComponent.Edit edit = component.edit()) {
+
+                if(!targets.isEmpty()) {
+                    targets.forEach(edit::setOrigin);
+                } else {
+                    for (OriginLayer layer : OriginLayers.getLayers()) {
+                        if(layer.isEnabled()) {
+                            edit.setOrigin(layer, Origin.EMPTY);
+                        }
                     }
                 }
-            }
 
-            boolean originAutomaticallyAssigned = component.checkAutoChoosingLayers(user, false);
-            int originOptions = OriginLayers.getOriginOptionCount(user);
+                boolean originAutomaticallyAssigned = component.checkAutoChoosingLayers(user, false);
+                int originOptions = OriginLayers.getOriginOptionCount(user);
+
+                component.selectingOrigin(!originAutomaticallyAssigned || originOptions > 0);
+                edit.commit();
 
-            component.selectingOrigin(!originAutomaticallyAssigned || originOptions > 0);
-            component.sync();
+            }
 
             if (component.isSelectingOrigin()) {
-                ServerPlayNetworking.send((ServerPlayerEntity) user, new OpenChooseOriginScreenS2CPacket(false));
+                OriginSyncScheduler.flush((ServerPlayerEntity) user);
+                ServerPlayNetworking.send((ServerPlayerEntity) user, OpenChooseOriginScreenS2CPacket.create(user, false));
             }
 
         }
@@ -1,22 +1,59 @@
 package io.github.apace100.origins.integration;
 
+import io.github.apace100.origins.origin.OriginLayers;
+import io.github.apace100.origins.origin.OriginRegistry;
 import net.fabricmc.fabric.api.event.Event;
 import net.fabricmc.fabric.api.event.EventFactory;
+import net.minecraft.util.Identifier;
+
+import java.util.Set;
 
 /**
  * Callback which is called when all of Origins data is loaded.<br>
  * This includes powers, origins and layers.<br>
  * It is not only called on the server, but also on the client when they
  * have received this data from the server and incorporated it into the registries.<br>
+ * Listeners that override {@link #onDataLoaded(boolean, Changes)} are also told which origins and layers
+ * were added, changed or removed by the reload.<br>
  */
 public interface OriginDataLoadedCallback {
     Event<OriginDataLoadedCallback> EVENT = EventFactory.createArrayBacked(OriginDataLoadedCallback.class,
-        (listeners) -> (isClient) -> {
-            for (OriginDataLoadedCallback event : listeners) {
-                event.onDataLoaded(isClient);
+        (listeners) -> new OriginDataLoadedCallback() {
+
+            @Override
+            public void onDataLoaded(boolean isClient) {
+                onDataLoaded(isClient, Changes.all());
+            }
+
+            @Override
+            public void onDataLoaded(boolean isClient, Changes changes) {
+                for (OriginDataLoadedCallback event : listeners) {
+                    event.onDataLoaded(isClient, changes);
+                }
             }
+
         }
     );
 
     void onDataLoaded(boolean isClient);
-}
\ No newline at end of file
+
+    default void onDataLoaded(boolean isClient, Changes changes) {
+        onDataLoaded(isClient);
+    }
+
+    /**
+     * @param origins   the IDs of the origins that were added, changed or removed
+     * @param layers    the IDs of the origin layers that were added, changed or removed
+     */
+    record Changes(Set<Identifier> origins, Set<Identifier> layers) {
+
+        /**
+         * @return changes that consider every origin and layer that is currently registered as changed
+         */
+        public static Changes all() {
+            return new Changes(OriginRegistry.keys(), OriginLayers.snapshot().keys());
+        }
+
+    }
+
+}
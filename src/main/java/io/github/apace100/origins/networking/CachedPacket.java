@@ -0,0 +1,240 @@
+package io.github.apace100.origins.networking;
+
+import com.google.common.hash.Hashing;
+import io.github.apace100.origins.Origins;
+import io.github.apace100.origins.networking.packet.s2c.CachedPayloadChunkS2CPacket;
+import io.github.apace100.origins.networking.packet.s2c.CachedPayloadS2CPacket;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import net.fabricmc.fabric.api.networking.v1.FabricPacket;
+import net.fabricmc.fabric.api.networking.v1.PacketByteBufs;
+import net.fabricmc.fabric.api.networking.v1.PacketType;
+import net.fabricmc.fabric.api.networking.v1.ServerConfigurationNetworking;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.network.packet.Packet;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.util.Identifier;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ *  A packet whose payload is only encoded once per version of the data it contains, and is then sent to every player
+ *  as a read-only slice of the same buffer. Meant for payloads that are the same for every player, like the
+ *  contents of the origin and layer registries.<br>
+ *  <br>
+ *  The payload is wrapped in a {@link CachedPayloadS2CPacket} together with a hash of its contents. Clients keep the
+ *  last payload of every channel (both in memory and on disk), so if a player is known to already have a payload with
+ *  the same hash, only the hash is sent instead.<br>
+ *  <br>
+ *  All cached packets are sent during the configuration phase already, so that the client has downloaded them before
+ *  the player joins the world, and can start decoding them as soon as it joined (see {@link ClientPayloadCache}). The copy that is sent in the play phase then only contains the hash, and
+ *  tells the client when to apply the payload (e.g: after the powers of Apoli, which the origins depend on, have been
+ *  synced).<br>
+ *  <br>
+ *  Payloads that are larger than {@link #MAX_CHUNK_SIZE} are sent as several {@link CachedPayloadChunkS2CPacket}, and
+ *  committed by a {@link CachedPayloadS2CPacket} that only contains the hash.
+ */
+public final class CachedPacket {
+
+    /**
+     *  The maximum size of a payload that is sent in a single packet, in bytes. Larger payloads are split into chunks
+     *  of this size, which keeps every packet well below the size limit of custom payloads.
+     */
+    public static final int MAX_CHUNK_SIZE = 256 * 1024;
+
+    private static final Map<Identifier, CachedPacket> INSTANCES = new ConcurrentHashMap<>();
+    private static final Map<UUID, Map<Identifier, Long>> KNOWN_HASHES = new ConcurrentHashMap<>();
+    private static final Map<UUID, Map<Identifier, Long>> RESENT_HASHES = new ConcurrentHashMap<>();
+
+    private final Identifier channel;
+    private final LongSupplier version;
+    private final Consumer<PacketByteBuf> writer;
+
+    private List<Payload> encoded;
+    private long encodedVersion;
+    private long hash;
+
+    public CachedPacket(Identifier channel, LongSupplier version, Consumer<PacketByteBuf> writer) {
+        this.channel = channel;
+        this.version = version;
+        this.writer = writer;
+        INSTANCES.put(channel, this);
+    }
+
+    public static CachedPacket of(PacketType<?> type, LongSupplier version, Supplier<? extends FabricPacket> packetFactory) {
+        return new CachedPacket(type.getId(), version, buffer -> packetFactory.get().write(buffer));
+    }
+
+    /**
+     *  @return the hash of the current payload of every cached packet, by channel
+     */
+    public static Map<Identifier, Long> getHashes() {
+
+        Map<Identifier, Long> hashes = new HashMap<>();
+        INSTANCES.forEach((channel, cachedPacket) -> hashes.put(channel, cachedPacket.getHash()));
+
+        return hashes;
+
+    }
+
+    /**
+     *  Remembers the payloads that the player with the specified UUID already has, so that they aren't sent again.
+     */
+    public static void setKnownHashes(UUID playerUuid, Map<Identifier, Long> hashes) {
+        KNOWN_HASHES.put(playerUuid, new ConcurrentHashMap<>(hashes));
+    }
+
+    /**
+     *  Forgets the payloads of the player with the specified UUID. Has to be called when the player disconnects, both
+     *  during the configuration phase and during the play phase.
+     */
+    public static void forgetKnownHashes(UUID playerUuid) {
+        KNOWN_HASHES.remove(playerUuid);
+        RESENT_HASHES.remove(playerUuid);
+    }
+
+    /**
+     *  Sends the full payload of the specified channel to the player, even if it is assumed to have it already (e.g:
+     *  because the client could not find it in its cache after all). Every payload is only re-sent once per player,
+     *  so that a client can't make the server send the same (possibly large) payload over and over again.
+     */
+    public static void resend(ServerPlayerEntity player, Identifier channel) {
+
+        CachedPacket cachedPacket = INSTANCES.get(channel);
+        if (cachedPacket == null) {
+            return;
+        }
+
+        long hash = cachedPacket.getHash();
+        Map<Identifier, Long> resentHashes = RESENT_HASHES.computeIfAbsent(player.getUuid(), k -> new ConcurrentHashMap<>());
+
+        if (Objects.equals(resentHashes.put(channel, hash), hash)) {
+            Origins.LOGGER.warn("Player {} requested payload \"{}\" again, even though it was already re-sent to them. Ignoring...", player.getName().getString(), channel);
+            return;
+        }
+
+        Map<Identifier, Long> knownHashes = KNOWN_HASHES.get(player.getUuid());
+        if (knownHashes != null) {
+            knownHashes.remove(channel);
+        }
+
+        cachedPacket.send(player);
+
+    }
+
+    /**
+     *  @return the packets of every cached packet, to be sent to the player with the specified UUID during the
+     *          configuration phase
+     */
+    public static List<Packet<?>> createConfigurationPackets(UUID playerUuid) {
+
+        List<Packet<?>> packets = new ArrayList<>();
+        INSTANCES.values().forEach(cachedPacket -> cachedPacket.createPayloads(playerUuid).forEach(payload -> packets.add(ServerConfigurationNetworking.createS2CPacket(payload.type(), payload.buffer()))));
+
+        return packets;
+
+    }
+
+    public void send(ServerPlayerEntity player) {
+        createPayloads(player.getUuid()).forEach(payload -> ServerPlayNetworking.send(player, payload.type(), payload.buffer()));
+    }
+
+    private List<Payload> createPayloads(UUID playerUuid) {
+
+        Map<Identifier, Long> knownHashes = KNOWN_HASHES.computeIfAbsent(playerUuid, k -> new ConcurrentHashMap<>());
+        List<Payload> payloads = new ArrayList<>();
+
+        synchronized (this) {
+
+            List<Payload> encoded = getEncoded();
+            if (!Objects.equals(knownHashes.put(channel, hash), hash)) {
+                //  Not retained, since the packets don't own the buffer; it is a heap buffer that is never released
+                encoded.forEach(payload -> payloads.add(new Payload(payload.type(), new PacketByteBuf(payload.buffer().slice()))));
+            }
+
+            //  Either refers to a payload the player already has, or commits the chunks that were sent above
+            if (payloads.isEmpty() || encoded.size() > 1) {
+
+                PacketByteBuf buffer = PacketByteBufs.create();
+                new CachedPayloadS2CPacket(channel, hash, null).write(buffer);
+
+                payloads.add(new Payload(CachedPayloadS2CPacket.TYPE.getId(), buffer));
+
+            }
+
+        }
+
+        return payloads;
+
+    }
+
+    /**
+     *  Discards the encoded payload, so that it is encoded again the next time it is sent, even if the version did not
+     *  change.
+     */
+    public synchronized void invalidate() {
+        //  The buffers aren't released, since packets that are still waiting to be sent may refer to them
+        encoded = null;
+    }
+
+    public synchronized long getHash() {
+        getEncoded();
+        return hash;
+    }
+
+    /**
+     *  @return the encoded payload; a single {@link CachedPayloadS2CPacket}, or several {@link CachedPayloadChunkS2CPacket}
+     *          if the payload is larger than {@link #MAX_CHUNK_SIZE}
+     */
+    private List<Payload> getEncoded() {
+
+        long currentVersion = version.getAsLong();
+        if (encoded == null || encodedVersion != currentVersion) {
+
+            invalidate();
+
+            PacketByteBuf payloadBuffer = PacketByteBufs.create();
+            writer.accept(payloadBuffer);
+
+            byte[] payload = ByteBufUtil.getBytes(payloadBuffer);
+            payloadBuffer.release();
+
+            hash = Hashing.farmHashFingerprint64().hashBytes(payload).asLong();
+            encoded = new ArrayList<>();
+
+            if (payload.length <= MAX_CHUNK_SIZE) {
+                encoded.add(encode(CachedPayloadS2CPacket.TYPE.getId(), new CachedPayloadS2CPacket(channel, hash, payload)));
+            } else {
+                for (int offset = 0; offset < payload.length; offset += MAX_CHUNK_SIZE) {
+                    byte[] chunk = Arrays.copyOfRange(payload, offset, Math.min(payload.length, offset + MAX_CHUNK_SIZE));
+                    encoded.add(encode(CachedPayloadChunkS2CPacket.TYPE.getId(), new CachedPayloadChunkS2CPacket(channel, hash, payload.length, offset, chunk)));
+                }
+            }
+
+            encodedVersion = currentVersion;
+
+        }
+
+        return encoded;
+
+    }
+
+    private static Payload encode(Identifier type, FabricPacket packet) {
+
+        PacketByteBuf buffer = new PacketByteBuf(Unpooled.buffer());
+        packet.write(buffer);
+
+        return new Payload(type, new PacketByteBuf(buffer.asReadOnly()));
+
+    }
+
+    private record Payload(Identifier type, PacketByteBuf buffer) {
+
+    }
+
+}
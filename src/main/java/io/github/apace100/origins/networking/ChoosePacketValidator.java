@@ -0,0 +1,311 @@
+package io.github.apace100.origins.networking;
+
+import io.github.apace100.origins.Origins;
+import io.github.apace100.origins.networking.packet.c2s.ChooseOriginC2SPacket;
+import io.github.apace100.origins.networking.packet.c2s.ChooseOriginsC2SPacket;
+import io.github.apace100.origins.networking.packet.c2s.ChooseRandomOriginC2SPacket;
+import io.github.apace100.origins.origin.IdPalette;
+import io.github.apace100.origins.origin.Origin;
+import io.github.apace100.origins.origin.OriginLayer;
+import io.github.apace100.origins.origin.OriginLayerIndex;
+import io.github.apace100.origins.origin.OriginLayers;
+import io.github.apace100.origins.origin.OriginRegistry;
+import io.github.apace100.origins.origin.RegistrySnapshot;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.util.Identifier;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.BitSet;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ *  Validates the packets with which players choose their origins on the network thread, before they are scheduled on
+ *  the server thread. Packets that refer to unknown layers or origins, or to origins that are not part of the layer,
+ *  are dropped right away, and so are packets of players that send more of them than a player choosing their origins
+ *  ever would.<br>
+ *  <br>
+ *  The validation only checks what doesn't depend on the state of the player, against a read-only {@link Table} that
+ *  is prepared on the server thread whenever the data is reloaded. The conditions of the layers are still checked by
+ *  the handlers on the server thread. Packets that were created with an outdated palette are never handled; the player
+ *  is asked to choose again instead. Packets that arrive while the table is outdated (e.g: right after a reload) are
+ *  validated on the server thread instead, once the table was prepared for the current contents of the registries.
+ */
+public final class ChoosePacketValidator {
+
+    /**
+     *  The amount of packets a player can send in quick succession before being rate limited.
+     */
+    public static final int BURST_SIZE = 8;
+
+    /**
+     *  The time it takes for a player to be allowed to send another packet after being rate limited.
+     */
+    public static final long REFILL_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+
+    private static final AtomicReference<Table> TABLE = new AtomicReference<>();
+    private static final Map<UUID, RateLimit> RATE_LIMITS = new ConcurrentHashMap<>();
+
+    private static final AtomicLong INVALID_PACKETS = new AtomicLong();
+    private static final AtomicLong RATE_LIMITED_PACKETS = new AtomicLong();
+
+    public enum Result {
+
+        /**
+         *  The packet can be handled.
+         */
+        ACCEPTED,
+
+        /**
+         *  The packet is invalid (or the player is rate limited), and is dropped.
+         */
+        REJECTED,
+
+        /**
+         *  The packet refers to layers and origins by raw IDs of other palettes than the current ones (e.g: because the
+         *  data packs were reloaded while it was being sent), so the player has to choose again.
+         */
+        OUTDATED,
+
+        /**
+         *  The table is outdated, so the packet has to be validated on the server thread with
+         *  {@link #validateNow(ServerPlayerEntity, Object, Function)}.
+         */
+        DEFERRED
+
+    }
+
+    /**
+     *  Prepares the table for the current contents of the origin and layer registries. Has to be called on the server
+     *  thread, since it compiles the indices of the layers.
+     */
+    public static void prepare() {
+        TABLE.set(Table.create(OriginLayers.snapshot(), OriginRegistry.snapshot()));
+    }
+
+    public static void forget(UUID playerUuid) {
+        RATE_LIMITS.remove(playerUuid);
+    }
+
+    /**
+     *  Validates the specified packet of the specified player on the network thread, which also counts towards the rate
+     *  limit of the player.
+     */
+    public static <T> Result accept(ServerPlayerEntity player, T packet, Function<T, Result> validator) {
+
+        if (!RATE_LIMITS.computeIfAbsent(player.getUuid(), k -> new RateLimit()).tryAcquire()) {
+            RATE_LIMITED_PACKETS.incrementAndGet();
+            return Result.REJECTED;
+        }
+
+        return validateWith(player, packet, validator);
+
+    }
+
+    /**
+     *  Validates the specified packet of the specified player whose validation was {@linkplain Result#DEFERRED deferred},
+     *  after preparing the table for the current contents of the registries. Has to be called on the server thread.
+     */
+    public static <T> Result validateNow(ServerPlayerEntity player, T packet, Function<T, Result> validator) {
+
+        if (getTable() == null) {
+            prepare();
+        }
+
+        Result result = validateWith(player, packet, validator);
+        return result != Result.DEFERRED ? result : Result.REJECTED;
+
+    }
+
+    private static <T> Result validateWith(ServerPlayerEntity player, T packet, Function<T, Result> validator) {
+
+        Result result = validator.apply(packet);
+        if (result == Result.REJECTED) {
+            INVALID_PACKETS.incrementAndGet();
+            Origins.LOGGER.warn("Dropped invalid origin choice of player {}.", player.getName().getString());
+        }
+
+        return result;
+
+    }
+
+    public static Result validate(ChooseOriginC2SPacket packet) {
+
+        Table table = getTable();
+        if (table == null) {
+            return Result.DEFERRED;
+        }
+
+        if (table.paletteHash() != packet.paletteHash()) {
+            return Result.OUTDATED;
+        }
+
+        LayerEntry layer = table.getLayer(packet.layerRawId());
+        return layer != null && layer.canChoose(packet.originRawId())
+            ? Result.ACCEPTED
+            : Result.REJECTED;
+
+    }
+
+    public static Result validate(ChooseRandomOriginC2SPacket packet) {
+
+        Table table = getTable();
+        if (table == null) {
+            return Result.DEFERRED;
+        }
+
+        LayerEntry layer = table.getLayer(table.layerPalette().getRawId(packet.layerId()));
+        return layer != null && layer.randomAllowed()
+            ? Result.ACCEPTED
+            : Result.REJECTED;
+
+    }
+
+    public static Result validate(ChooseOriginsC2SPacket packet) {
+
+        Table table = getTable();
+        if (table == null) {
+            return Result.DEFERRED;
+        }
+
+        if (table.paletteHash() != packet.paletteHash()) {
+            return Result.OUTDATED;
+        }
+
+        if (packet.choices().isEmpty() || packet.choices().size() > table.layers().length) {
+            return Result.REJECTED;
+        }
+
+        BitSet chosenLayers = new BitSet(table.layers().length);
+        for (ChooseOriginsC2SPacket.Choice choice : packet.choices()) {
+
+            LayerEntry layer = table.getLayer(choice.layerRawId());
+            if (layer == null || chosenLayers.get(choice.layerRawId())) {
+                return Result.REJECTED;
+            }
+
+            if (choice.isRandom() ? !layer.randomAllowed() : !layer.canChoose(choice.originRawId())) {
+                return Result.REJECTED;
+            }
+
+            chosenLayers.set(choice.layerRawId());
+
+        }
+
+        return Result.ACCEPTED;
+
+    }
+
+    public static long getInvalidPackets() {
+        return INVALID_PACKETS.get();
+    }
+
+    public static long getRateLimitedPackets() {
+        return RATE_LIMITED_PACKETS.get();
+    }
+
+    /**
+     *  @return the table, or null if it was prepared for other contents of the registries than the current ones
+     */
+    @Nullable
+    private static Table getTable() {
+
+        Table table = TABLE.get();
+        return table != null && table.layerGeneration() == OriginLayers.getGeneration() && table.originGeneration() == OriginRegistry.getGeneration()
+            ? table
+            : null;
+
+    }
+
+    /**
+     *  @param layers   the layers, by their raw ID
+     */
+    private record Table(long layerGeneration, long originGeneration, int paletteHash, IdPalette layerPalette, LayerEntry[] layers) {
+
+        private static Table create(RegistrySnapshot<OriginLayer> layerSnapshot, RegistrySnapshot<Origin> originSnapshot) {
+
+            IdPalette layerPalette = layerSnapshot.palette();
+            IdPalette originPalette = originSnapshot.palette();
+
+            LayerEntry[] layers = new LayerEntry[layerPalette.size()];
+            for (int rawId = 0; rawId < layers.length; rawId++) {
+
+                OriginLayer layer = layerSnapshot.get(layerPalette.getId(rawId));
+                OriginLayerIndex index = layer.getIndex();
+
+                BitSet choosableOrigins = new BitSet(originPalette.size());
+                index.forEachOrigin(null, origin -> {
+                    if (origin.isChoosable()) {
+                        choosableOrigins.set(originPalette.getRawId(origin.getIdentifier()));
+                    }
+                });
+
+                layers[rawId] = new LayerEntry(choosableOrigins, layer.isRandomAllowed() && index.getRandomCount(null) > 0);
+
+            }
+
+            return new Table(
+                layerSnapshot.generation(),
+                originSnapshot.generation(),
+                IdPalette.hash(layerPalette, originPalette),
+                layerPalette,
+                layers
+            );
+
+        }
+
+        @Nullable
+        private LayerEntry getLayer(int rawId) {
+            return rawId >= 0 && rawId < layers.length ? layers[rawId] : null;
+        }
+
+    }
+
+    /**
+     *  @param choosableOrigins the raw IDs of the choosable origins that are part of the layer, regardless of their
+     *                          conditions
+     *  @param randomAllowed    whether a random origin can be chosen in the layer, regardless of its conditions
+     */
+    private record LayerEntry(BitSet choosableOrigins, boolean randomAllowed) {
+
+        private boolean canChoose(int originRawId) {
+            return originRawId >= 0 && choosableOrigins.get(originRawId);
+        }
+
+    }
+
+    /**
+     *  A token bucket that holds up to {@link #BURST_SIZE} tokens, and gains a token every {@link #REFILL_NANOS}.
+     */
+    private static final class RateLimit {
+
+        private int tokens = BURST_SIZE;
+        private long lastRefill = System.nanoTime();
+
+        private synchronized boolean tryAcquire() {
+
+            long now = System.nanoTime();
+            long refills = (now - lastRefill) / REFILL_NANOS;
+
+            if (refills > 0) {
+                tokens = (int) Math.min(BURST_SIZE, tokens + refills);
+                lastRefill += refills * REFILL_NANOS;
+            }
+
+            if (tokens == 0) {
+                return false;
+            }
+
+            tokens--;
+            return true;
+
+        }
+
+    }
+
+}
@@ -0,0 +1,394 @@
+package io.github.apace100.origins.networking;
+
+import com.google.common.hash.Hashing;
+import io.github.apace100.origins.Origins;
+import io.github.apace100.origins.networking.packet.c2s.RequestPayloadC2SPacket;
+import io.github.apace100.origins.networking.packet.s2c.CachedPayloadChunkS2CPacket;
+import io.github.apace100.origins.networking.packet.s2c.CachedPayloadS2CPacket;
+import io.netty.buffer.Unpooled;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.fabricmc.fabric.api.networking.v1.PacketSender;
+import net.fabricmc.loader.api.FabricLoader;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.network.ClientPlayerEntity;
+import net.minecraft.client.network.ServerInfo;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.Util;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ *  The client side of {@link CachedPacket}. Keeps the last payload of every channel in memory, and stores it on disk
+ *  per server, so that the server can skip sending payloads that did not change since the last time the player joined.<br>
+ *  <br>
+ *  Payloads received during the configuration phase are only stored, and are applied once the server refers to them
+ *  again in the play phase. They are not decoded during the configuration phase, since decoding may read registry
+ *  entries by their raw IDs (e.g: the items of the icons of origins), which are only remapped to the ones of the server
+ *  by the registry sync of Fabric during that phase. Instead, payloads whose handler allows it are decoded as soon as
+ *  the player joined the world, before the server refers to them. Decoding happens on a worker thread, so that large
+ *  payloads don't cause the client thread to hitch; payloads that are split into chunks are only decoded once all
+ *  chunks arrived.
+ *  Payloads that are received in the play phase are applied once they are decoded, without blocking the client thread.
+ */
+@Environment(EnvType.CLIENT)
+public final class ClientPayloadCache {
+
+    /**
+     *  The maximum size of a payload that is split into chunks, in bytes. Checked before any memory is allocated for
+     *  the payload, so that a server can't make the client allocate an array of arbitrary size.
+     */
+    public static final int MAX_PAYLOAD_SIZE = 128 * CachedPacket.MAX_CHUNK_SIZE;
+
+    private static final Map<Identifier, Handler<?>> HANDLERS = new HashMap<>();
+    private static final Map<Identifier, Payload> PAYLOADS = new ConcurrentHashMap<>();
+    private static final Map<Identifier, Transfer> TRANSFERS = new ConcurrentHashMap<>();
+
+    /**
+     *  Completes once every payload that was received in the play phase so far has been applied. Payloads are applied
+     *  on the client thread in the order they were received, since later payloads may depend on earlier ones (e.g: the
+     *  layers on the origins), but the client thread never waits for them to be decoded.
+     */
+    private static CompletableFuture<Void> pendingApplies = CompletableFuture.completedFuture(null);
+
+    /**
+     *  Incremented whenever the cache is cleared, so that payloads of a previous connection that are still being
+     *  decoded are not applied anymore.
+     */
+    private static int session = 0;
+
+    /**
+     *  Whether the player joined the world, after which payloads can be decoded early.
+     */
+    private static volatile boolean joined = false;
+
+    /**
+     *  @param decoder      decodes the payload
+     *  @param applier      applies the decoded payload
+     *  @param decodeEarly  whether the payload can already be decoded once the player joined the world, before the server
+     *                      refers to it. Should be false if decoding depends on data that is only synced later in the
+     *                      play phase.
+     */
+    public static <T> void registerHandler(Identifier channel, Function<PacketByteBuf, T> decoder, Consumer<T> applier, boolean decodeEarly) {
+        HANDLERS.put(channel, new Handler<>(decoder, applier, decodeEarly));
+    }
+
+    /**
+     *  @param hashes   the hashes of the payloads the server is going to send, by channel
+     *  @return         the hashes of the payloads that are already cached, which are also loaded into memory
+     */
+    public static Map<Identifier, Long> getCachedHashes(Map<Identifier, Long> hashes) {
+
+        Map<Identifier, Long> cachedHashes = new HashMap<>();
+        hashes.forEach((channel, hash) -> {
+            if (getPayload(channel, hash) != null) {
+                cachedHashes.put(channel, hash);
+            }
+        });
+
+        return cachedHashes;
+
+    }
+
+    /**
+     *  Receives a payload during the configuration phase, which is only decoded once the player joined the world.
+     */
+    public static void receiveEarly(CachedPayloadS2CPacket packet, PacketSender responseSender) {
+        getOrStorePayload(packet);
+    }
+
+    /**
+     *  Starts decoding the payloads that were received (or loaded from the cache) during the configuration phase, if
+     *  their handler allows it. Has to be called once the player joined the world, after the registries were synced.
+     */
+    public static void onJoin() {
+        joined = true;
+        PAYLOADS.forEach(ClientPayloadCache::decodeEarly);
+    }
+
+    /**
+     *  Receives a chunk of a payload that was split into several packets. Once all chunks arrived, the payload is
+     *  stored like any other payload, and is applied when the transfer is committed. Chunks have to arrive in order,
+     *  and every chunk but the last has to be exactly {@link CachedPacket#MAX_CHUNK_SIZE} bytes long; any other chunk
+     *  cancels the transfer.
+     */
+    public static void receiveChunk(CachedPayloadChunkS2CPacket packet) {
+
+        Identifier channel = packet.channel();
+        int totalSize = packet.totalSize();
+        int offset = packet.offset();
+
+        if (totalSize <= CachedPacket.MAX_CHUNK_SIZE || totalSize > MAX_PAYLOAD_SIZE) {
+            Origins.LOGGER.warn("Received chunk of payload \"{}\" with invalid total size {} (must be between {} and {} bytes)", channel, totalSize, CachedPacket.MAX_CHUNK_SIZE + 1, MAX_PAYLOAD_SIZE);
+            TRANSFERS.remove(channel);
+            return;
+        }
+
+        if (offset == 0) {
+            TRANSFERS.put(channel, new Transfer(packet.hash(), new byte[totalSize], 0));
+        }
+
+        Transfer transfer = TRANSFERS.get(channel);
+        if (transfer == null || transfer.hash() != packet.hash() || transfer.data().length != totalSize || transfer.received() != offset || packet.data().length != Math.min(CachedPacket.MAX_CHUNK_SIZE, totalSize - offset)) {
+            Origins.LOGGER.warn("Received unexpected chunk of payload \"{}\" at offset {}", channel, offset);
+            TRANSFERS.remove(channel);
+            return;
+        }
+
+        int received = offset + packet.data().length;
+        System.arraycopy(packet.data(), 0, transfer.data(), offset, packet.data().length);
+
+        if (received < totalSize) {
+            TRANSFERS.put(channel, new Transfer(transfer.hash(), transfer.data(), received));
+            return;
+        }
+
+        TRANSFERS.remove(channel);
+        if (Hashing.farmHashFingerprint64().hashBytes(transfer.data()).asLong() != transfer.hash()) {
+            Origins.LOGGER.warn("Received corrupted payload \"{}\"", channel);
+            return;
+        }
+
+        decodeEarly(channel, storePayload(channel, new Payload(transfer.hash(), transfer.data())));
+
+    }
+
+    private static void decodeEarly(Identifier channel, @Nullable Payload payload) {
+
+        Handler<?> handler = HANDLERS.get(channel);
+        if (joined && payload != null && handler != null && handler.decodeEarly()) {
+            payload.decode(handler);
+        }
+
+    }
+
+    /**
+     *  Receives a payload during the play phase, and applies it.
+     */
+    public static void receive(CachedPayloadS2CPacket packet, ClientPlayerEntity player, PacketSender responseSender) {
+
+        Identifier channel = packet.channel();
+        Payload payload = getOrStorePayload(packet);
+
+        if (payload == null) {
+            Origins.LOGGER.warn("Payload \"{}\" was expected to be cached, but it wasn't. Requesting it from the server...", channel);
+            responseSender.sendPacket(new RequestPayloadC2SPacket(channel));
+            return;
+        }
+
+        Handler<?> handler = HANDLERS.get(channel);
+        if (handler != null) {
+            pendingApplies = payload.apply(handler, pendingApplies, session).exceptionally(e -> {
+                Origins.LOGGER.error("Could not apply payload \"{}\"", channel, e);
+                return null;
+            });
+        } else {
+            Origins.LOGGER.warn("Received cached payload for unknown channel \"{}\"", channel);
+        }
+
+    }
+
+    @Nullable
+    private static Payload getOrStorePayload(CachedPayloadS2CPacket packet) {
+
+        Identifier channel = packet.channel();
+        if (packet.payload() == null) {
+            return getPayload(channel, packet.hash());
+        }
+
+        return storePayload(channel, new Payload(packet.hash(), packet.payload()));
+
+    }
+
+    private static Payload storePayload(Identifier channel, Payload payload) {
+
+        PAYLOADS.put(channel, payload);
+        Util.getIoWorkerExecutor().execute(() -> store(channel, payload));
+
+        return payload;
+
+    }
+
+    /**
+     *  Runs the specified action on the client thread once every payload that was received so far has been applied,
+     *  unless the cache is cleared (e.g: because the client disconnected) before that.
+     */
+    public static void afterPendingPayloads(Runnable action) {
+
+        int currentSession = session;
+        pendingApplies.thenRunAsync(() -> {
+            if (currentSession == session) {
+                action.run();
+            }
+        }, MinecraftClient.getInstance());
+
+    }
+
+    public static void clear() {
+
+        PAYLOADS.clear();
+        TRANSFERS.clear();
+
+        pendingApplies = CompletableFuture.completedFuture(null);
+        session++;
+        joined = false;
+
+    }
+
+    @Nullable
+    private static Payload getPayload(Identifier channel, long hash) {
+
+        Payload payload = PAYLOADS.get(channel);
+        if (payload != null && payload.hash() == hash) {
+            return payload;
+        }
+
+        payload = load(channel);
+        if (payload != null && payload.hash() == hash) {
+            PAYLOADS.put(channel, payload);
+            return payload;
+        }
+
+        return null;
+
+    }
+
+    @Nullable
+    private static Payload load(Identifier channel) {
+
+        Path path = getPath(channel);
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+
+            long hash = input.readLong();
+            byte[] data = input.readAllBytes();
+
+            //  Don't trust a file that was modified or only partially written
+            return Hashing.farmHashFingerprint64().hashBytes(data).asLong() == hash
+                ? new Payload(hash, data)
+                : null;
+
+        } catch (IOException e) {
+            Origins.LOGGER.warn("Could not read cached payload \"{}\": {}", channel, e.getMessage());
+            return null;
+        }
+
+    }
+
+    private static void store(Identifier channel, Payload payload) {
+
+        Path path = getPath(channel);
+        try {
+
+            Files.createDirectories(path.getParent());
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+                output.writeLong(payload.hash());
+                output.write(payload.data());
+            }
+
+        } catch (IOException e) {
+            Origins.LOGGER.warn("Could not cache payload \"{}\": {}", channel, e.getMessage());
+        }
+
+    }
+
+    private static Path getPath(Identifier channel) {
+
+        ServerInfo serverInfo = MinecraftClient.getInstance().getCurrentServerEntry();
+        String serverKey = Hashing.farmHashFingerprint64()
+            .hashUnencodedChars(serverInfo != null ? serverInfo.address : "local")
+            .toString();
+
+        return FabricLoader.getInstance().getGameDir()
+            .resolve("cache")
+            .resolve(Origins.MODID)
+            .resolve(serverKey)
+            .resolve(channel.getNamespace() + "." + channel.getPath().replace('/', '.') + ".bin");
+
+    }
+
+    private record Handler<T>(Function<PacketByteBuf, T> decoder, Consumer<T> applier, boolean decodeEarly) {
+
+    }
+
+    /**
+     *  @param received the amount of bytes of the payload that were received so far, which is also the offset of the
+     *                  next chunk
+     */
+    private record Transfer(long hash, byte[] data, int received) {
+
+    }
+
+    private static final class Payload {
+
+        private final long hash;
+        private final byte[] data;
+
+        private CompletableFuture<?> decoded;
+
+        private Payload(long hash, byte[] data) {
+            this.hash = hash;
+            this.data = data;
+        }
+
+        public long hash() {
+            return hash;
+        }
+
+        public byte[] data() {
+            return data;
+        }
+
+        /**
+         *  Starts decoding the payload on a worker thread, unless it is already being decoded.
+         */
+        private synchronized CompletableFuture<?> decode(Handler<?> handler) {
+
+            if (decoded == null) {
+                decoded = CompletableFuture.supplyAsync(() -> handler.decoder().apply(new PacketByteBuf(Unpooled.wrappedBuffer(data))), Util.getMainWorkerExecutor());
+            }
+
+            return decoded;
+
+        }
+
+        /**
+         *  Applies the decoded payload on the client thread once it is decoded and the previous payloads are applied,
+         *  and discards it afterwards, since the applier may take ownership of (and modify) the decoded objects.
+         *
+         *  @param previous the applies of the payloads that were received before this one
+         *  @param session  the session the payload was received in; it is not applied if the cache was cleared since
+         */
+        @SuppressWarnings("unchecked")
+        private <T> CompletableFuture<Void> apply(Handler<T> handler, CompletableFuture<Void> previous, int session) {
+
+            CompletableFuture<?> future;
+            synchronized (this) {
+                future = decode(handler);
+                decoded = null;
+            }
+
+            return previous.thenAcceptBothAsync(future, (v, decodedPayload) -> {
+                if (session == ClientPayloadCache.session) {
+                    handler.applier().accept((T) decodedPayload);
+                }
+            }, MinecraftClient.getInstance());
+
+        }
+
+    }
+
+}
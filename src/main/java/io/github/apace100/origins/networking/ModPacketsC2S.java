@@ -2,27 +2,44 @@ package io.github.apace100.origins.networking;
 
 import io.github.apace100.origins.Origins;
 import io.github.apace100.origins.component.OriginComponent;
+import io.github.apace100.origins.component.OriginSyncScheduler;
+import io.github.apace100.origins.component.PlayerOriginComponent;
+import io.github.apace100.origins.integration.OriginDataLoadedCallback;
+import io.github.apace100.origins.networking.packet.RegistryHashesPacket;
 import io.github.apace100.origins.networking.packet.VersionHandshakePacket;
+import io.github.apace100.origins.networking.packet.c2s.AcknowledgeOriginSyncC2SPacket;
 import io.github.apace100.origins.networking.packet.c2s.ChooseOriginC2SPacket;
+import io.github.apace100.origins.networking.packet.c2s.ChooseOriginsC2SPacket;
 import io.github.apace100.origins.networking.packet.c2s.ChooseRandomOriginC2SPacket;
+import io.github.apace100.origins.networking.packet.c2s.RequestPayloadC2SPacket;
 import io.github.apace100.origins.networking.packet.s2c.ConfirmOriginS2CPacket;
+import io.github.apace100.origins.networking.packet.s2c.ConfirmOriginsS2CPacket;
+import io.github.apace100.origins.networking.packet.s2c.OpenChooseOriginScreenS2CPacket;
+import io.github.apace100.origins.networking.task.SyncRegistriesTask;
 import io.github.apace100.origins.networking.task.VersionHandshakeTask;
 import io.github.apace100.origins.origin.Origin;
 import io.github.apace100.origins.origin.OriginLayer;
+import io.github.apace100.origins.origin.OriginLayerIndex;
 import io.github.apace100.origins.origin.OriginLayers;
 import io.github.apace100.origins.origin.OriginRegistry;
 import io.github.apace100.origins.registry.ModComponents;
+import net.fabricmc.fabric.api.networking.v1.FabricPacket;
 import net.fabricmc.fabric.api.networking.v1.PacketSender;
+import net.fabricmc.fabric.api.networking.v1.PacketType;
 import net.fabricmc.fabric.api.networking.v1.ServerConfigurationConnectionEvents;
 import net.fabricmc.fabric.api.networking.v1.ServerConfigurationNetworking;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
 import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
+import net.minecraft.entity.Entity;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.network.ServerConfigurationNetworkHandler;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.text.Text;
 import net.minecraft.util.Identifier;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.List;
+import java.util.*;
+import java.util.function.Function;
 
 @SuppressWarnings("UnstableApiUsage")
 public class ModPacketsC2S {
@@ -34,24 +51,90 @@ public class ModPacketsC2S {
             ServerConfigurationNetworking.registerGlobalReceiver(VersionHandshakePacket.TYPE, ModPacketsC2S::handleHandshakeReply);
         }
 
-        ServerPlayNetworking.registerGlobalReceiver(ChooseOriginC2SPacket.TYPE, ModPacketsC2S::onChooseOrigin);
-        ServerPlayNetworking.registerGlobalReceiver(ChooseRandomOriginC2SPacket.TYPE, ModPacketsC2S::chooseRandomOrigin);
+        ServerConfigurationConnectionEvents.CONFIGURE.register(ModPacketsC2S::sendRegistryHashes);
+        ServerConfigurationNetworking.registerGlobalReceiver(RegistryHashesPacket.TYPE, ModPacketsC2S::handleRegistryHashesReply);
+        ServerConfigurationConnectionEvents.DISCONNECT.register((handler, server) -> CachedPacket.forgetKnownHashes(handler.getDebugProfile().getId()));
+
+        registerValidatedReceiver(ChooseOriginC2SPacket.TYPE, ChoosePacketValidator::validate, ModPacketsC2S::onChooseOrigin);
+        registerValidatedReceiver(ChooseRandomOriginC2SPacket.TYPE, ChoosePacketValidator::validate, ModPacketsC2S::chooseRandomOrigin);
+        registerValidatedReceiver(ChooseOriginsC2SPacket.TYPE, ChoosePacketValidator::validate, ModPacketsC2S::onChooseOrigins);
+        ServerPlayNetworking.registerGlobalReceiver(RequestPayloadC2SPacket.TYPE, (packet, player, responseSender) -> CachedPacket.resend(player, packet.channel()));
+        ServerPlayNetworking.registerGlobalReceiver(AcknowledgeOriginSyncC2SPacket.TYPE, ModPacketsC2S::onAcknowledgeOriginSync);
+
+        OriginDataLoadedCallback.EVENT.register(isClient -> {
+            if (!isClient) {
+                ChoosePacketValidator.prepare();
+            }
+        });
+        ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> {
+            CachedPacket.forgetKnownHashes(handler.player.getUuid());
+            ChoosePacketValidator.forget(handler.player.getUuid());
+        });
+
+    }
+
+    /**
+     *  Registers a receiver that reads and validates the packet on the network thread (see {@link ChoosePacketValidator}),
+     *  and only schedules the handler on the server thread if the packet was accepted. Packets that were created with
+     *  outdated raw IDs let the player choose again instead, and packets whose validation was deferred are validated on
+     *  the server thread first.
+     */
+    private static <T extends FabricPacket> void registerValidatedReceiver(PacketType<T> type, Function<T, ChoosePacketValidator.Result> validator, ServerPlayNetworking.PlayPacketHandler<T> handler) {
+        ServerPlayNetworking.registerGlobalReceiver(type.getId(), (server, player, networkHandler, buffer, responseSender) -> {
+
+            T packet = type.read(buffer);
+            ChoosePacketValidator.Result result = ChoosePacketValidator.accept(player, packet, validator);
+
+            if (result == ChoosePacketValidator.Result.REJECTED) {
+                return;
+            }
+
+            server.execute(() -> {
+
+                if (!networkHandler.isConnectionOpen()) {
+                    return;
+                }
+
+                ChoosePacketValidator.Result finalResult = result == ChoosePacketValidator.Result.DEFERRED
+                    ? ChoosePacketValidator.validateNow(player, packet, validator)
+                    : result;
+
+                switch (finalResult) {
+                    case ACCEPTED -> handler.receive(packet, player, responseSender);
+                    case OUTDATED -> {
+                        Origins.LOGGER.warn("Player {} tried to choose origins using outdated origin or layer IDs. Letting them choose again...", player.getName().getString());
+                        reopenOriginScreen(player);
+                    }
+                }
+
+            });
+
+        });
 
     }
 
     private static void onChooseOrigin(ChooseOriginC2SPacket packet, ServerPlayerEntity player, PacketSender responseSender) {
 
+        Identifier layerId = packet.layerId();
+        Identifier originId = packet.originId();
+
+        if (!packet.isPaletteCurrent() || layerId == null || originId == null) {
+            Origins.LOGGER.warn("Player {} tried to choose an origin using outdated origin or layer IDs. Letting them choose again...", player.getName().getString());
+            reopenOriginScreen(player);
+            return;
+        }
+
         OriginComponent component = ModComponents.ORIGIN.get(player);
-        OriginLayer layer = OriginLayers.getLayer(packet.layerId());
+        OriginLayer layer = OriginLayers.getLayer(layerId);
 
         if (component.hasAllOrigins() && component.hasOrigin(layer)) {
-            Origins.LOGGER.warn("Player {} tried to choose origin for layer \"{}\" while having one already.", player.getName().getString(), packet.layerId());
+            Origins.LOGGER.warn("Player {} tried to choose origin for layer \"{}\" while having one already.", player.getName().getString(), layerId);
             return;
         }
 
-        Origin origin = OriginRegistry.get(packet.originId());
-        if (!(origin.isChoosable() || layer.contains(origin, player))) {
-            Origins.LOGGER.warn("Player {} tried to choose unchoosable origin \"{}\" from layer \"{}\"!", player.getName().getString(), packet.originId(), packet.layerId());
+        Origin origin = OriginRegistry.get(originId);
+        if (!origin.isChoosable() || !layer.contains(origin, player)) {
+            Origins.LOGGER.warn("Player {} tried to choose unchoosable origin \"{}\" from layer \"{}\"!", player.getName().getString(), originId, layerId);
             component.setOrigin(layer, Origin.EMPTY);
         } else {
 
@@ -67,7 +150,7 @@ public class ModPacketsC2S {
                 OriginComponent.onChosen(player, hadOriginBefore);
             }
 
-            Origins.LOGGER.info("Player {} chose origin \"{}\" for layer \"{}\"", player.getName().getString(), packet.originId(), packet.layerId());
+            Origins.LOGGER.info("Player {} chose origin \"{}\" for layer \"{}\"", player.getName().getString(), originId, layerId);
 
         }
 
@@ -81,21 +164,28 @@ public class ModPacketsC2S {
     private static void chooseRandomOrigin(ChooseRandomOriginC2SPacket packet, ServerPlayerEntity player, PacketSender responseSender) {
 
         OriginComponent component = ModComponents.ORIGIN.get(player);
-        OriginLayer layer = OriginLayers.getLayer(packet.layerId());
+        OriginLayer layer = OriginLayers.getNullableLayer(packet.layerId());
+
+        if (layer == null) {
+            Origins.LOGGER.warn("Player {} tried to choose a random origin for unknown layer \"{}\". Letting them choose again...", player.getName().getString(), packet.layerId());
+            reopenOriginScreen(player);
+            return;
+        }
 
         if (component.hasAllOrigins() && component.hasOrigin(layer)) {
             Origins.LOGGER.warn("Player {} tried to choose origin for layer \"{}\" while having one already.", player.getName().getString(), packet.layerId());
             return;
         }
 
-        List<Identifier> randomOriginIds = layer.getRandomOrigins(player);
-        if (!layer.isRandomAllowed() || randomOriginIds.isEmpty()) {
+        OriginLayerIndex index = layer.getIndex();
+        int randomOriginCount = index.getRandomCount(player);
+
+        if (!layer.isRandomAllowed() || randomOriginCount == 0) {
             Origins.LOGGER.warn("Player {} tried to choose a random origin for layer \"{}\", which is not allowed!", player.getName().getString(), packet.layerId());
             component.setOrigin(layer, Origin.EMPTY);
         } else {
 
-            Identifier randomOriginId = randomOriginIds.get(player.getRandom().nextInt(randomOriginIds.size()));
-            Origin origin = OriginRegistry.get(randomOriginId);
+            Origin origin = index.getRandomOrigin(player, player.getRandom().nextInt(randomOriginCount));
 
             boolean hadOriginBefore = component.hadOriginBefore();
             boolean hadAllOrigins = component.hasAllOrigins();
@@ -108,7 +198,7 @@ public class ModPacketsC2S {
                 OriginComponent.onChosen(player, hadOriginBefore);
             }
 
-            Origins.LOGGER.info("Player {} was randomly assigned the following origin: {}", player.getName().getString(), randomOriginId);
+            Origins.LOGGER.info("Player {} was randomly assigned the following origin: {}", player.getName().getString(), origin.getIdentifier());
 
         }
 
@@ -119,6 +209,153 @@ public class ModPacketsC2S {
 
     }
 
+    /**
+     *  Applies the choices of every layer in the order they were made, as a single edit. Every choice is validated
+     *  against the state of the player after the previous choices were applied, since those can change the conditions
+     *  of the later layers. If any choice is invalid, none of them are applied, and the player is asked to choose again.
+     */
+    private static void onChooseOrigins(ChooseOriginsC2SPacket packet, ServerPlayerEntity player, PacketSender responseSender) {
+
+        OriginComponent component = ModComponents.ORIGIN.get(player);
+        if (!packet.isPaletteCurrent()) {
+            Origins.LOGGER.warn("Player {} tried to choose origins using outdated origin or layer IDs. Letting them choose again...", player.getName().getString());
+            reopenOriginScreen(player);
+            return;
+        }
+
+        boolean hadOriginBefore = component.hadOriginBefore();
+        boolean hadAllOrigins = component.hasAllOrigins();
+
+        List<OriginLayer> layers = new ArrayList<>(packet.choices().size());
+        for (ChooseOriginsC2SPacket.Choice choice : packet.choices()) {
+
+            Identifier layerId = choice.layerId();
+            OriginLayer layer = layerId != null ? OriginLayers.getNullableLayer(layerId) : null;
+
+            if (layer == null || layers.contains(layer)) {
+                Origins.LOGGER.warn("Player {} tried to choose origins for an unknown or duplicate layer. Letting them choose again...", player.getName().getString());
+                reopenOriginScreen(player);
+                return;
+            }
+
+            if (hadAllOrigins && component.hasOrigin(layer)) {
+                Origins.LOGGER.warn("Player {} tried to choose origin for layer \"{}\" while having one already.", player.getName().getString(), layerId);
+                return;
+            }
+
+            layers.add(layer);
+
+        }
+
+        List<Origin> chosenOrigins = new ArrayList<>(layers.size());
+        try (OriginComponent.Edit edit = component.edit()) {
+
+            for (int i = 0; i < layers.size(); i++) {
+
+                OriginLayer layer = layers.get(i);
+                Origin origin = getChosenOrigin(player, layer, packet.choices().get(i));
+
+                if (origin == null) {
+                    break;
+                }
+
+                edit.setOrigin(layer, origin);
+                chosenOrigins.add(origin);
+
+            }
+
+            if (chosenOrigins.size() == layers.size()) {
+
+                component.checkAutoChoosingLayers(player, false);
+                component.selectingOrigin(false);
+
+                edit.commit();
+
+            }
+
+        }
+
+        //  The edit was rolled back, so the options are computed from the state the player chose from
+        if (chosenOrigins.size() != layers.size()) {
+            reopenOriginScreen(player);
+            return;
+        }
+
+        List<ConfirmOriginsS2CPacket.Entry> confirmedOrigins = new ArrayList<>(layers.size());
+        for (int i = 0; i < layers.size(); i++) {
+
+            OriginLayer layer = layers.get(i);
+            Origin origin = chosenOrigins.get(i);
+
+            if (packet.choices().get(i).isRandom()) {
+                Origins.LOGGER.info("Player {} was randomly assigned the following origin: {}", player.getName().getString(), origin.getIdentifier());
+            } else {
+                Origins.LOGGER.info("Player {} chose origin \"{}\" for layer \"{}\"", player.getName().getString(), origin.getIdentifier(), layer.getIdentifier());
+            }
+
+            confirmedOrigins.add(ConfirmOriginsS2CPacket.Entry.of(layer, origin.getIdentifier()));
+
+        }
+
+        if (component.hasAllOrigins() && !hadAllOrigins) {
+            OriginComponent.onChosen(player, hadOriginBefore);
+        }
+
+        OriginSyncScheduler.flush(player);
+        ServerPlayNetworking.send(player, ConfirmOriginsS2CPacket.create(player, confirmedOrigins));
+
+    }
+
+    /**
+     *  @return the origin the player gets for the specified choice, or null if the choice is not valid for the current
+     *          state of the player. Random origins are picked from the same options the choice was validated against.
+     */
+    @Nullable
+    private static Origin getChosenOrigin(ServerPlayerEntity player, OriginLayer layer, ChooseOriginsC2SPacket.Choice choice) {
+
+        if (choice.isRandom()) {
+
+            OriginLayerIndex index = layer.getIndex();
+            int randomOriginCount = layer.isRandomAllowed() ? index.getRandomCount(player) : 0;
+
+            Origin origin = randomOriginCount > 0
+                ? index.getRandomOrigin(player, player.getRandom().nextInt(randomOriginCount))
+                : null;
+
+            if (origin == null) {
+                Origins.LOGGER.warn("Player {} tried to choose a random origin for layer \"{}\", which is not allowed! Letting them choose again...", player.getName().getString(), layer.getIdentifier());
+            }
+
+            return origin;
+
+        }
+
+        Identifier originId = choice.originId();
+        Origin origin = originId != null && OriginRegistry.contains(originId) ? OriginRegistry.get(originId) : null;
+
+        if (origin == null || !origin.isChoosable() || !layer.contains(origin, player)) {
+            Origins.LOGGER.warn("Player {} tried to choose unknown or unchoosable origin \"{}\" from layer \"{}\"! Letting them choose again...", player.getName().getString(), originId, layer.getIdentifier());
+            return null;
+        }
+
+        return origin;
+
+    }
+
+    private static void onAcknowledgeOriginSync(AcknowledgeOriginSyncC2SPacket packet, ServerPlayerEntity player, PacketSender responseSender) {
+
+        Entity entity = player.getServerWorld().getEntityById(packet.entityId());
+        if (entity != null && ModComponents.ORIGIN.getNullable(entity) instanceof PlayerOriginComponent component) {
+            component.acknowledgeSync(player, packet.syncId(), packet.applied());
+        }
+
+    }
+
+    private static void reopenOriginScreen(ServerPlayerEntity player) {
+        OriginSyncScheduler.flush(player);
+        ServerPlayNetworking.send(player, OpenChooseOriginScreenS2CPacket.create(player, false));
+    }
+
     private static void handleHandshakeReply(VersionHandshakePacket packet, ServerConfigurationNetworkHandler handler, PacketSender responseSender) {
 
         boolean mismatch = packet.semver().length != Origins.SEMVER.length;
@@ -148,6 +385,23 @@ public class ModPacketsC2S {
 
     }
 
+    private static void sendRegistryHashes(ServerConfigurationNetworkHandler handler, MinecraftServer server) {
+        if (ServerConfigurationNetworking.canSend(handler, RegistryHashesPacket.TYPE)) {
+            handler.addTask(new SyncRegistriesTask(CachedPacket.getHashes()));
+        }
+    }
+
+    private static void handleRegistryHashesReply(RegistryHashesPacket packet, ServerConfigurationNetworkHandler handler, PacketSender responseSender) {
+
+        UUID playerUuid = handler.getDebugProfile().getId();
+
+        CachedPacket.setKnownHashes(playerUuid, packet.hashes());
+        CachedPacket.createConfigurationPackets(playerUuid).forEach(responseSender::sendPacket);
+
+        handler.completeTask(SyncRegistriesTask.KEY);
+
+    }
+
     private static void handshake(ServerConfigurationNetworkHandler handler, MinecraftServer server) {
 
         if (ServerConfigurationNetworking.canSend(handler, VersionHandshakePacket.TYPE)) {
@@ -160,7 +414,8 @@ public class ModPacketsC2S {
     }
 
     private static void confirmOrigin(ServerPlayerEntity player, OriginLayer layer, Origin origin) {
-        ServerPlayNetworking.send(player, new ConfirmOriginS2CPacket(layer.getIdentifier(), origin.getIdentifier()));
+        OriginSyncScheduler.flush(player);
+        ServerPlayNetworking.send(player, ConfirmOriginS2CPacket.create(player, layer.getIdentifier(), origin.getIdentifier()));
     }
 
 }
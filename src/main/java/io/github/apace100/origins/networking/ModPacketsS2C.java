@@ -6,7 +6,10 @@ import io.github.apace100.origins.badge.Badge;
 import io.github.apace100.origins.badge.BadgeManager;
 import io.github.apace100.origins.component.OriginComponent;
 import io.github.apace100.origins.integration.OriginDataLoadedCallback;
+import io.github.apace100.origins.networking.packet.RawLayerOptions;
+import io.github.apace100.origins.networking.packet.RegistryHashesPacket;
 import io.github.apace100.origins.networking.packet.VersionHandshakePacket;
+import io.github.apace100.origins.networking.packet.c2s.AcknowledgeOriginSyncC2SPacket;
 import io.github.apace100.origins.networking.packet.s2c.*;
 import io.github.apace100.origins.origin.Origin;
 import io.github.apace100.origins.origin.OriginLayer;
@@ -15,20 +18,22 @@ import io.github.apace100.origins.origin.OriginRegistry;
 import io.github.apace100.origins.registry.ModComponents;
 import io.github.apace100.origins.screen.ChooseOriginScreen;
 import io.github.apace100.origins.screen.WaitForNextLayerScreen;
+import io.netty.buffer.Unpooled;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
 import net.fabricmc.fabric.api.client.networking.v1.ClientConfigurationNetworking;
 import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
 import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
+import net.fabricmc.fabric.api.networking.v1.FabricPacket;
 import net.fabricmc.fabric.api.networking.v1.PacketSender;
 import net.minecraft.client.MinecraftClient;
-import net.minecraft.client.network.ClientPlayNetworkHandler;
 import net.minecraft.client.network.ClientPlayerEntity;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.network.PacketByteBuf;
 import net.minecraft.util.Identifier;
 
 import java.util.*;
-import java.util.function.Predicate;
 
 public class ModPacketsS2C {
 
@@ -36,91 +41,170 @@ public class ModPacketsS2C {
     public static void register() {
 
         ClientConfigurationNetworking.registerGlobalReceiver(VersionHandshakePacket.TYPE, ModPacketsS2C::handleHandshake);
+        ClientConfigurationNetworking.registerGlobalReceiver(RegistryHashesPacket.TYPE, ModPacketsS2C::handleRegistryHashes);
 
+        ClientConfigurationNetworking.registerGlobalReceiver(CachedPayloadS2CPacket.TYPE, ClientPayloadCache::receiveEarly);
+        ClientConfigurationNetworking.registerGlobalReceiver(CachedPayloadChunkS2CPacket.TYPE, (packet, responseSender) -> ClientPayloadCache.receiveChunk(packet));
+
+        ClientPayloadCache.registerHandler(ModPackets.ORIGIN_LIST, SyncOriginRegistryS2CPacket::read, ModPacketsS2C::receiveOriginList, true);
+        ClientPayloadCache.registerHandler(ModPackets.LAYER_LIST, SyncOriginLayerRegistryS2CPacket::read, ModPacketsS2C::receiveLayerList, true);
+        //  Badges can only be decoded after the badge factories of Calio have been synced in the play phase
+        ClientPayloadCache.registerHandler(ModPackets.BADGE_LIST, ModPacketsS2C::readBadgeList, ModPacketsS2C::receiveBadgeList, false);
+        ClientPlayConnectionEvents.JOIN.register((handler, sender, client) -> ClientPayloadCache.onJoin());
+        ClientPlayConnectionEvents.DISCONNECT.register((handler, client) -> ClientPayloadCache.clear());
+
+        //  Packets that refer to origins and layers by raw ID wait for the registry payloads that are still being decoded
         ClientPlayConnectionEvents.INIT.register(((clientPlayNetworkHandler, minecraftClient) -> {
-            ClientPlayNetworking.registerReceiver(OpenChooseOriginScreenS2CPacket.TYPE, ModPacketsS2C::openOriginScreen);
-            ClientPlayNetworking.registerReceiver(SyncOriginRegistryS2CPacket.TYPE, ModPacketsS2C::receiveOriginList);
-            ClientPlayNetworking.registerReceiver(SyncOriginLayerRegistryS2CPacket.TYPE, ModPacketsS2C::receiveLayerList);
-            ClientPlayNetworking.registerReceiver(ConfirmOriginS2CPacket.TYPE, ModPacketsS2C::receiveOriginConfirmation);
-            ClientPlayNetworking.registerReceiver(ModPackets.BADGE_LIST, ModPacketsS2C::receiveBadgeList);
+            ClientPlayNetworking.registerReceiver(OpenChooseOriginScreenS2CPacket.TYPE, afterPendingPayloads(ModPacketsS2C::openOriginScreen));
+            ClientPlayNetworking.registerReceiver(CachedPayloadS2CPacket.TYPE, ClientPayloadCache::receive);
+            ClientPlayNetworking.registerReceiver(CachedPayloadChunkS2CPacket.TYPE, (packet, player, responseSender) -> ClientPayloadCache.receiveChunk(packet));
+            ClientPlayNetworking.registerReceiver(ConfirmOriginS2CPacket.TYPE, afterPendingPayloads(ModPacketsS2C::receiveOriginConfirmation));
+            ClientPlayNetworking.registerReceiver(ConfirmOriginsS2CPacket.TYPE, afterPendingPayloads(ModPacketsS2C::receiveOriginsConfirmation));
+            ClientPlayNetworking.registerReceiver(SyncPlayerOriginsS2CPacket.TYPE, ModPacketsS2C::receivePlayerOrigins);
         }));
 
     }
 
+    @Environment(EnvType.CLIENT)
+    private static <T extends FabricPacket> ClientPlayNetworking.PlayPacketHandler<T> afterPendingPayloads(ClientPlayNetworking.PlayPacketHandler<T> handler) {
+        return (packet, player, responseSender) -> ClientPayloadCache.afterPendingPayloads(() -> handler.receive(packet, player, responseSender));
+    }
+
     @Environment(EnvType.CLIENT)
     private static void receiveOriginConfirmation(ConfirmOriginS2CPacket packet, ClientPlayerEntity player, PacketSender responseSender) {
 
-        OriginLayer layer = OriginLayers.getLayer(packet.layerId());
-        Origin origin = OriginRegistry.get(packet.originId());
+        Identifier layerId = packet.layerId();
+        Identifier originId = packet.originId();
+
+        if (layerId == null || originId == null) {
+            Origins.LOGGER.warn("Received origin confirmation with unknown raw IDs (layer: {}, origin: {})", packet.layerRawId(), packet.originRawId());
+            return;
+        }
+
+        OriginLayer layer = OriginLayers.getLayer(layerId);
+        Origin origin = OriginRegistry.get(originId);
 
         OriginComponent component = ModComponents.ORIGIN.get(player);
         component.setOrigin(layer, origin);
 
         if (MinecraftClient.getInstance().currentScreen instanceof WaitForNextLayerScreen nextLayerScreen) {
-            nextLayerScreen.openSelection();
+            nextLayerScreen.openSelection(RawLayerOptions.resolveAll(packet.remainingLayers()));
         }
 
     }
 
     @Environment(EnvType.CLIENT)
-    private static void handleHandshake(VersionHandshakePacket packet, PacketSender responseSender) {
-        responseSender.sendPacket(new VersionHandshakePacket(Origins.SEMVER));
+    private static void receiveOriginsConfirmation(ConfirmOriginsS2CPacket packet, ClientPlayerEntity player, PacketSender responseSender) {
+
+        OriginComponent component = ModComponents.ORIGIN.get(player);
+        for (ConfirmOriginsS2CPacket.Entry entry : packet.origins()) {
+
+            Identifier layerId = entry.layerId();
+            Identifier originId = entry.originId();
+
+            if (layerId == null || originId == null) {
+                Origins.LOGGER.warn("Received origin confirmation with unknown raw IDs (layer: {}, origin: {})", entry.layerRawId(), entry.originRawId());
+                continue;
+            }
+
+            component.setOrigin(OriginLayers.getLayer(layerId), OriginRegistry.get(originId));
+
+        }
+
+        if (MinecraftClient.getInstance().currentScreen instanceof WaitForNextLayerScreen nextLayerScreen) {
+            nextLayerScreen.openSelection(RawLayerOptions.resolveAll(packet.remainingLayers()));
+        }
+
     }
 
     @Environment(EnvType.CLIENT)
-    private static void openOriginScreen(OpenChooseOriginScreenS2CPacket packet, ClientPlayerEntity player, PacketSender responseSender) {
+    private static void receivePlayerOrigins(SyncPlayerOriginsS2CPacket packet, ClientPlayerEntity player, PacketSender responseSender) {
+        for (SyncPlayerOriginsS2CPacket.Entry entry : packet.entries()) {
 
-        ArrayList<OriginLayer> layers = new ArrayList<>();
-        OriginComponent component = ModComponents.ORIGIN.get(player);
+            Entity entity = player.getWorld().getEntityById(entry.entityId());
+            if (entity != null && ModComponents.ORIGIN.getNullable(entity) instanceof OriginComponent component) {
+                component.applySyncPacket(new PacketByteBuf(Unpooled.wrappedBuffer(entry.data())));
+            }
 
-        OriginLayers.getLayers()
-            .stream()
-            .filter(ol -> ol.isEnabled() && !component.hasOrigin(ol))
-            .forEach(layers::add);
+        }
+    }
+
+    /**
+     *  Tells the server whether the client applied a sync of the origin component of the specified player (see
+     *  {@link AcknowledgeOriginSyncC2SPacket}). A sync that couldn't be applied is only reported once the payloads that
+     *  are still being decoded have been applied, since those may contain the registries the sync refers to.
+     */
+    @Environment(EnvType.CLIENT)
+    public static void acknowledgeOriginSync(PlayerEntity player, long syncId, boolean applied) {
+
+        int entityId = player.getId();
+        Runnable acknowledge = () -> {
+            if (ClientPlayNetworking.canSend(AcknowledgeOriginSyncC2SPacket.TYPE)) {
+                ClientPlayNetworking.send(new AcknowledgeOriginSyncC2SPacket(entityId, syncId, applied));
+            }
+        };
+
+        if (applied) {
+            acknowledge.run();
+        } else {
+            ClientPayloadCache.afterPendingPayloads(acknowledge);
+        }
+
+    }
+
+    @Environment(EnvType.CLIENT)
+    private static void handleHandshake(VersionHandshakePacket packet, PacketSender responseSender) {
+        responseSender.sendPacket(new VersionHandshakePacket(Origins.SEMVER));
+    }
 
-        Collections.sort(layers);
-        MinecraftClient.getInstance().setScreen(new ChooseOriginScreen(layers, 0, packet.showBackground()));
+    @Environment(EnvType.CLIENT)
+    private static void handleRegistryHashes(RegistryHashesPacket packet, PacketSender responseSender) {
+        responseSender.sendPacket(new RegistryHashesPacket(ClientPayloadCache.getCachedHashes(packet.hashes())));
+    }
 
+    @Environment(EnvType.CLIENT)
+    private static void openOriginScreen(OpenChooseOriginScreenS2CPacket packet, ClientPlayerEntity player, PacketSender responseSender) {
+        ChooseOriginScreen.openFirst(RawLayerOptions.resolveAll(packet.layers()), packet.showBackground());
     }
 
     @Environment(EnvType.CLIENT)
-    private static void receiveOriginList(SyncOriginRegistryS2CPacket packet, ClientPlayerEntity player, PacketSender responseSender) {
+    private static void receiveOriginList(SyncOriginRegistryS2CPacket packet) {
 
         OriginsClient.isServerRunningOrigins = true;
 
-        OriginRegistry.reset();
-        packet.origins().entrySet()
-            .stream()
-            .map(e -> Origin.createFromData(e.getKey(), e.getValue()))
-            .filter(Predicate.not(OriginRegistry::contains))
-            .forEach(OriginRegistry::register);
+        //  Keep the order of the server, so that the raw IDs of the origins are the same on both sides
+        Map<Identifier, Origin> origins = new LinkedHashMap<>();
+        packet.origins().forEach((id, data) -> origins.put(id, id.equals(Origin.EMPTY.getIdentifier()) ? Origin.EMPTY : Origin.createFromData(id, data)));
+
+        origins.putIfAbsent(Origin.EMPTY.getIdentifier(), Origin.EMPTY);
+        OriginRegistry.publish(origins);
 
     }
 
     @Environment(EnvType.CLIENT)
-    private static void receiveLayerList(SyncOriginLayerRegistryS2CPacket packet, ClientPlayerEntity player, PacketSender responseSender) {
+    private static void receiveLayerList(SyncOriginLayerRegistryS2CPacket packet) {
 
-        OriginLayers.clear();
-        packet.layers().forEach(OriginLayers::register);
+        OriginLayers.publish(packet.layers());
 
         OriginDataLoadedCallback.EVENT.invoker().onDataLoaded(true);
 
     }
 
     @Environment(EnvType.CLIENT)
-    private static void receiveBadgeList(MinecraftClient client, ClientPlayNetworkHandler handler, PacketByteBuf buf, PacketSender responseSender) {
-
-        Map<Identifier, List<Badge>> badges = buf.readMap(
+    private static Map<Identifier, List<Badge>> readBadgeList(PacketByteBuf buf) {
+        return buf.readMap(
             PacketByteBuf::readIdentifier,
             valueBuf -> valueBuf.readCollection(size -> new LinkedList<>(), BadgeManager.REGISTRY::receiveDataObject)
         );
+    }
 
-        client.execute(() -> {
-            BadgeManager.clear();
-            badges.forEach((powerId, powerBadges) -> powerBadges.forEach(powerBadge ->
-                BadgeManager.putPowerBadge(powerId, powerBadge))
-            );
-        });
+    @Environment(EnvType.CLIENT)
+    private static void receiveBadgeList(Map<Identifier, List<Badge>> badges) {
+
+        BadgeManager.clear();
+        badges.forEach((powerId, powerBadges) -> powerBadges.forEach(powerBadge ->
+            BadgeManager.putPowerBadge(powerId, powerBadge))
+        );
 
     }
 
@@ -0,0 +1,117 @@
+package io.github.apace100.origins.networking;
+
+import io.netty.buffer.Unpooled;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.text.Text;
+import net.minecraft.util.Identifier;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+
+/**
+ *  A table of deduplicated strings that is written in front of a payload, so that strings which occur several times
+ *  in it (like the namespaces of IDs, or the same text being used by several origins) are only sent once. The payload
+ *  itself then refers to each string by its index in the table.
+ */
+public final class StringTable {
+
+    private final List<String> strings;
+    private final Object2IntMap<String> indices;
+
+    private StringTable(List<String> strings) {
+
+        this.strings = strings;
+        this.indices = new Object2IntOpenHashMap<>(strings.size());
+        this.indices.defaultReturnValue(-1);
+
+        for (int i = 0; i < strings.size(); i++) {
+            indices.put(strings.get(i), i);
+        }
+
+    }
+
+    /**
+     *  Writes the payload written by the specified writer, preceded by the table of the strings it wrote.
+     */
+    public static void write(PacketByteBuf buffer, BiConsumer<StringTable, PacketByteBuf> payloadWriter) {
+
+        StringTable table = new StringTable(new ArrayList<>());
+        PacketByteBuf payloadBuffer = new PacketByteBuf(Unpooled.buffer());
+
+        try {
+
+            payloadWriter.accept(table, payloadBuffer);
+
+            buffer.writeCollection(table.strings, PacketByteBuf::writeString);
+            buffer.writeBytes(payloadBuffer);
+
+        } finally {
+            payloadBuffer.release();
+        }
+
+    }
+
+    /**
+     *  Reads a payload that was written by {@link #write(PacketByteBuf, BiConsumer)}.
+     */
+    public static <T> T read(PacketByteBuf buffer, BiFunction<StringTable, PacketByteBuf, T> payloadReader) {
+        StringTable table = new StringTable(buffer.readList(PacketByteBuf::readString));
+        return payloadReader.apply(table, buffer);
+    }
+
+    public void writeString(PacketByteBuf buffer, String string) {
+
+        int index = indices.getInt(string);
+        if (index == -1) {
+            index = strings.size();
+            strings.add(string);
+            indices.put(string, index);
+        }
+
+        buffer.writeVarInt(index);
+
+    }
+
+    public String readString(PacketByteBuf buffer) {
+
+        int index = buffer.readVarInt();
+        if (index < 0 || index >= strings.size()) {
+            throw new IndexOutOfBoundsException("String table index " + index + " is out of bounds for a table of size " + strings.size());
+        }
+
+        return strings.get(index);
+
+    }
+
+    public void writeIdentifier(PacketByteBuf buffer, Identifier id) {
+        writeString(buffer, id.getNamespace());
+        writeString(buffer, id.getPath());
+    }
+
+    public Identifier readIdentifier(PacketByteBuf buffer) {
+        return new Identifier(readString(buffer), readString(buffer));
+    }
+
+    public void writeIdentifiers(PacketByteBuf buffer, List<Identifier> ids) {
+        buffer.writeCollection(ids, this::writeIdentifier);
+    }
+
+    public List<Identifier> readIdentifiers(PacketByteBuf buffer) {
+        return buffer.readList(this::readIdentifier);
+    }
+
+    public void writeText(PacketByteBuf buffer, @Nullable Text text) {
+        buffer.writeNullable(text, (textBuffer, nonNullText) -> writeString(textBuffer, Text.Serializer.toJson(nonNullText)));
+    }
+
+    @Nullable
+    public Text readText(PacketByteBuf buffer) {
+        return buffer.readNullable(textBuffer -> Text.Serializer.fromJson(readString(textBuffer)));
+    }
+
+}
@@ -0,0 +1,128 @@
+package io.github.apace100.origins.networking.packet;
+
+import io.github.apace100.origins.component.OriginComponent;
+import io.github.apace100.origins.origin.*;
+import io.github.apace100.origins.registry.ModComponents;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.util.Identifier;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *  The {@link LayerOptions} of a layer as they are sent to the client, with the layer and its origins referred to by
+ *  their raw IDs. The raw IDs are only resolved once the packet is handled, since the client may not have applied the
+ *  latest contents of the registries yet while the packet is being read.
+ */
+public record RawLayerOptions(int layerRawId, int[] originRawIds, int[] randomOriginRawIds, int optionCount) {
+
+    public static RawLayerOptions of(LayerOptions options) {
+        return new RawLayerOptions(
+            OriginLayers.snapshot().palette().getRawId(options.layer().getIdentifier()),
+            toRawIds(options.origins()),
+            toRawIds(options.randomOrigins()),
+            options.optionCount()
+        );
+    }
+
+    /**
+     *  @return the options of every enabled layer the player doesn't have an origin in yet, sorted by the order of the
+     *          layers
+     */
+    public static List<RawLayerOptions> ofUnchosenLayers(PlayerEntity player) {
+
+        OriginComponent component = ModComponents.ORIGIN.get(player);
+        List<OriginLayer> layers = new ArrayList<>();
+
+        for (OriginLayer layer : OriginLayers.getLayers()) {
+            if (layer.isEnabled() && !component.hasOrigin(layer)) {
+                layers.add(layer);
+            }
+        }
+
+        layers.sort(null);
+        return layers.stream()
+            .map(layer -> of(LayerOptions.compute(layer, player)))
+            .toList();
+
+    }
+
+    public static RawLayerOptions read(PacketByteBuf buffer) {
+        return new RawLayerOptions(buffer.readVarInt(), buffer.readIntArray(), buffer.readIntArray(), buffer.readVarInt());
+    }
+
+    public void write(PacketByteBuf buffer) {
+        buffer.writeVarInt(layerRawId);
+        buffer.writeIntArray(originRawIds);
+        buffer.writeIntArray(randomOriginRawIds);
+        buffer.writeVarInt(optionCount);
+    }
+
+    /**
+     *  @return the options with the raw IDs resolved using the current registries, or null if the layer is unknown
+     */
+    @Nullable
+    public LayerOptions resolve() {
+
+        Identifier layerId = OriginLayers.snapshot().palette().getId(layerRawId);
+        OriginLayer layer = layerId != null ? OriginLayers.getNullableLayer(layerId) : null;
+
+        if (layer == null) {
+            return null;
+        }
+
+        return new LayerOptions(layer, fromRawIds(originRawIds), fromRawIds(randomOriginRawIds), optionCount);
+
+    }
+
+    /**
+     *  @return the resolved options of each of the specified options whose layer is known
+     */
+    public static List<LayerOptions> resolveAll(List<RawLayerOptions> rawOptions) {
+
+        List<LayerOptions> options = new ArrayList<>(rawOptions.size());
+        for (RawLayerOptions rawOption : rawOptions) {
+
+            LayerOptions option = rawOption.resolve();
+            if (option != null) {
+                options.add(option);
+            }
+
+        }
+
+        return options;
+
+    }
+
+    private static int[] toRawIds(List<Origin> origins) {
+
+        IdPalette palette = OriginRegistry.snapshot().palette();
+        return origins.stream()
+            .mapToInt(origin -> palette.getRawId(origin.getIdentifier()))
+            .toArray();
+
+    }
+
+    private static List<Origin> fromRawIds(int[] rawIds) {
+
+        RegistrySnapshot<Origin> snapshot = OriginRegistry.snapshot();
+        List<Origin> origins = new ArrayList<>(rawIds.length);
+
+        for (int rawId : rawIds) {
+
+            Identifier id = snapshot.palette().getId(rawId);
+            Origin origin = id != null ? snapshot.get(id) : null;
+
+            if (origin != null) {
+                origins.add(origin);
+            }
+
+        }
+
+        return origins;
+
+    }
+
+}
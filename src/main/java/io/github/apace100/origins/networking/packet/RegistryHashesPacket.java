@@ -0,0 +1,35 @@
+package io.github.apace100.origins.networking.packet;
+
+import io.github.apace100.origins.Origins;
+import net.fabricmc.fabric.api.networking.v1.FabricPacket;
+import net.fabricmc.fabric.api.networking.v1.PacketType;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.util.Identifier;
+
+import java.util.Map;
+
+/**
+ *  Sent by the server with the hashes of the payloads it is going to send, and by the client with the hashes of the
+ *  payloads it already has cached.
+ */
+public record RegistryHashesPacket(Map<Identifier, Long> hashes) implements FabricPacket {
+
+    public static final PacketType<RegistryHashesPacket> TYPE = PacketType.create(
+        Origins.identifier("handshake/registry_hashes"), RegistryHashesPacket::read
+    );
+
+    private static RegistryHashesPacket read(PacketByteBuf buffer) {
+        return new RegistryHashesPacket(buffer.readMap(PacketByteBuf::readIdentifier, PacketByteBuf::readLong));
+    }
+
+    @Override
+    public void write(PacketByteBuf buffer) {
+        buffer.writeMap(hashes, PacketByteBuf::writeIdentifier, PacketByteBuf::writeLong);
+    }
+
+    @Override
+    public PacketType<?> getType() {
+        return TYPE;
+    }
+
+}
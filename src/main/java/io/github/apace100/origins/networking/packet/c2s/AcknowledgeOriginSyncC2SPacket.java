@@ -0,0 +1,39 @@
+package io.github.apace100.origins.networking.packet.c2s;
+
+import io.github.apace100.origins.Origins;
+import net.fabricmc.fabric.api.networking.v1.FabricPacket;
+import net.fabricmc.fabric.api.networking.v1.PacketType;
+import net.minecraft.network.PacketByteBuf;
+
+/**
+ *  Sent by the client after it received a sync of the origin component of a player, so that the server only builds
+ *  later syncs on top of data the client actually has.
+ *
+ *  @param entityId the ID of the player whose origin component was synced
+ *  @param syncId   the ID of the sync (see {@link io.github.apace100.origins.component.PlayerOriginComponent})
+ *  @param applied  whether the client applied the sync. If false, the client couldn't resolve the raw IDs of the sync
+ *                  (e.g: because it hasn't received the current registries yet), and asks for a full resync instead.
+ */
+public record AcknowledgeOriginSyncC2SPacket(int entityId, long syncId, boolean applied) implements FabricPacket {
+
+    public static final PacketType<AcknowledgeOriginSyncC2SPacket> TYPE = PacketType.create(
+        Origins.identifier("c2s/acknowledge_origin_sync"), AcknowledgeOriginSyncC2SPacket::read
+    );
+
+    private static AcknowledgeOriginSyncC2SPacket read(PacketByteBuf buffer) {
+        return new AcknowledgeOriginSyncC2SPacket(buffer.readVarInt(), buffer.readVarLong(), buffer.readBoolean());
+    }
+
+    @Override
+    public void write(PacketByteBuf buffer) {
+        buffer.writeVarInt(entityId);
+        buffer.writeVarLong(syncId);
+        buffer.writeBoolean(applied);
+    }
+
+    @Override
+    public PacketType<?> getType() {
+        return TYPE;
+    }
+
+}
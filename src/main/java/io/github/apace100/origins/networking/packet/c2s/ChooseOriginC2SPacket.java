@@ -1,25 +1,69 @@
 package io.github.apace100.origins.networking.packet.c2s;
 
 import io.github.apace100.origins.Origins;
+import io.github.apace100.origins.origin.OriginLayers;
+import io.github.apace100.origins.origin.OriginRegistry;
 import net.fabricmc.fabric.api.networking.v1.FabricPacket;
 import net.fabricmc.fabric.api.networking.v1.PacketType;
 import net.minecraft.network.PacketByteBuf;
 import net.minecraft.util.Identifier;
+import org.jetbrains.annotations.Nullable;
 
-public record ChooseOriginC2SPacket(Identifier layerId, Identifier originId) implements FabricPacket {
+/**
+ *  @param paletteHash  the hash of the palettes that were used to get the raw IDs, so that the server can tell whether
+ *                      they still refer to the same layer and origin (e.g: if the data packs were reloaded while the
+ *                      packet was being sent)
+ *  @param layerRawId   the raw ID of the layer in the {@link io.github.apace100.origins.origin.IdPalette} of the layer
+ *                      registry
+ *  @param originRawId  the raw ID of the origin in the {@link io.github.apace100.origins.origin.IdPalette} of the
+ *                      origin registry
+ */
+public record ChooseOriginC2SPacket(int paletteHash, int layerRawId, int originRawId) implements FabricPacket {
 
     public static final PacketType<ChooseOriginC2SPacket> TYPE = PacketType.create(
         Origins.identifier("c2s/choose_origin"), ChooseOriginC2SPacket::read
     );
 
+    public static ChooseOriginC2SPacket of(Identifier layerId, Identifier originId) {
+        return new ChooseOriginC2SPacket(
+            OriginRegistry.getPaletteHash(),
+            OriginLayers.snapshot().palette().getRawId(layerId),
+            OriginRegistry.snapshot().palette().getRawId(originId)
+        );
+    }
+
     private static ChooseOriginC2SPacket read(PacketByteBuf buffer) {
-        return new ChooseOriginC2SPacket(buffer.readIdentifier(), buffer.readIdentifier());
+        return new ChooseOriginC2SPacket(buffer.readInt(), buffer.readVarInt(), buffer.readVarInt());
     }
 
     @Override
     public void write(PacketByteBuf buffer) {
-        buffer.writeIdentifier(layerId);
-        buffer.writeIdentifier(originId);
+        buffer.writeInt(paletteHash);
+        buffer.writeVarInt(layerRawId);
+        buffer.writeVarInt(originRawId);
+    }
+
+    /**
+     *  @return whether the raw IDs were taken from the same palettes as the current ones
+     */
+    public boolean isPaletteCurrent() {
+        return paletteHash == OriginRegistry.getPaletteHash();
+    }
+
+    /**
+     *  @return the ID of the layer, or null if the current layer registry doesn't have a layer with its raw ID
+     */
+    @Nullable
+    public Identifier layerId() {
+        return OriginLayers.snapshot().palette().getId(layerRawId);
+    }
+
+    /**
+     *  @return the ID of the origin, or null if the current origin registry doesn't have an origin with its raw ID
+     */
+    @Nullable
+    public Identifier originId() {
+        return OriginRegistry.snapshot().palette().getId(originRawId);
     }
 
     @Override
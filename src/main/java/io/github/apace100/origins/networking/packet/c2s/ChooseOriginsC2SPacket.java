@@ -0,0 +1,108 @@
+package io.github.apace100.origins.networking.packet.c2s;
+
+import io.github.apace100.origins.Origins;
+import io.github.apace100.origins.origin.Origin;
+import io.github.apace100.origins.origin.OriginLayer;
+import io.github.apace100.origins.origin.OriginLayers;
+import io.github.apace100.origins.origin.OriginRegistry;
+import io.netty.handler.codec.DecoderException;
+import net.fabricmc.fabric.api.networking.v1.FabricPacket;
+import net.fabricmc.fabric.api.networking.v1.PacketType;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.util.Identifier;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *  Chooses the origins of several layers at once, which the server applies as a whole.
+ *
+ *  @param paletteHash  the hash of the palettes that were used to get the raw IDs (see {@link OriginRegistry#getPaletteHash()})
+ *  @param choices      the choice of each layer, in the order they were made
+ */
+public record ChooseOriginsC2SPacket(int paletteHash, List<Choice> choices) implements FabricPacket {
+
+    public static final PacketType<ChooseOriginsC2SPacket> TYPE = PacketType.create(
+        Origins.identifier("c2s/choose_origins"), ChooseOriginsC2SPacket::read
+    );
+
+    /**
+     *  The maximum amount of choices a packet can contain. This is checked before the choices are read, so that a client
+     *  can't make the server allocate a list of arbitrary size on the network thread; the choices are checked against
+     *  the actual amount of layers by the {@link io.github.apace100.origins.networking.ChoosePacketValidator}.
+     */
+    public static final int MAX_CHOICES = 256;
+
+    public static ChooseOriginsC2SPacket of(List<Choice> choices) {
+        return new ChooseOriginsC2SPacket(OriginRegistry.getPaletteHash(), choices);
+    }
+
+    private static ChooseOriginsC2SPacket read(PacketByteBuf buffer) {
+
+        int paletteHash = buffer.readInt();
+        int choiceCount = buffer.readVarInt();
+
+        if (choiceCount < 0 || choiceCount > MAX_CHOICES) {
+            throw new DecoderException("Received " + choiceCount + " origin choices, which is more than the maximum of " + MAX_CHOICES);
+        }
+
+        List<Choice> choices = new ArrayList<>(choiceCount);
+        for (int i = 0; i < choiceCount; i++) {
+            choices.add(new Choice(buffer.readVarInt(), buffer.readVarInt()));
+        }
+
+        return new ChooseOriginsC2SPacket(paletteHash, choices);
+
+    }
+
+    @Override
+    public void write(PacketByteBuf buffer) {
+        buffer.writeInt(paletteHash);
+        buffer.writeCollection(choices, (choiceBuffer, choice) -> {
+            choiceBuffer.writeVarInt(choice.layerRawId());
+            choiceBuffer.writeVarInt(choice.originRawId());
+        });
+    }
+
+    public boolean isPaletteCurrent() {
+        return paletteHash == OriginRegistry.getPaletteHash();
+    }
+
+    @Override
+    public PacketType<?> getType() {
+        return TYPE;
+    }
+
+    /**
+     *  @param layerRawId   the raw ID of the layer
+     *  @param originRawId  the raw ID of the chosen origin, or {@link #RANDOM} if the origin should be chosen randomly
+     */
+    public record Choice(int layerRawId, int originRawId) {
+
+        public static final int RANDOM = -1;
+
+        public static Choice of(OriginLayer layer, @Nullable Origin origin) {
+            return new Choice(
+                OriginLayers.snapshot().palette().getRawId(layer.getIdentifier()),
+                origin != null ? OriginRegistry.snapshot().palette().getRawId(origin.getIdentifier()) : RANDOM
+            );
+        }
+
+        public boolean isRandom() {
+            return originRawId == RANDOM;
+        }
+
+        @Nullable
+        public Identifier layerId() {
+            return OriginLayers.snapshot().palette().getId(layerRawId);
+        }
+
+        @Nullable
+        public Identifier originId() {
+            return OriginRegistry.snapshot().palette().getId(originRawId);
+        }
+
+    }
+
+}
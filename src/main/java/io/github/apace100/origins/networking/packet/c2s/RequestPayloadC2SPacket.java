@@ -0,0 +1,32 @@
+package io.github.apace100.origins.networking.packet.c2s;
+
+import io.github.apace100.origins.Origins;
+import net.fabricmc.fabric.api.networking.v1.FabricPacket;
+import net.fabricmc.fabric.api.networking.v1.PacketType;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.util.Identifier;
+
+/**
+ *  Sent by the client if it was told to use a cached payload that it doesn't have.
+ */
+public record RequestPayloadC2SPacket(Identifier channel) implements FabricPacket {
+
+    public static final PacketType<RequestPayloadC2SPacket> TYPE = PacketType.create(
+        Origins.identifier("c2s/request_payload"), RequestPayloadC2SPacket::read
+    );
+
+    private static RequestPayloadC2SPacket read(PacketByteBuf buffer) {
+        return new RequestPayloadC2SPacket(buffer.readIdentifier());
+    }
+
+    @Override
+    public void write(PacketByteBuf buffer) {
+        buffer.writeIdentifier(channel);
+    }
+
+    @Override
+    public PacketType<?> getType() {
+        return TYPE;
+    }
+
+}
@@ -0,0 +1,44 @@
+package io.github.apace100.origins.networking.packet.s2c;
+
+import io.github.apace100.origins.Origins;
+import net.fabricmc.fabric.api.networking.v1.FabricPacket;
+import net.fabricmc.fabric.api.networking.v1.PacketType;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.util.Identifier;
+
+/**
+ *  A part of a payload that is too large to be sent in a single {@link CachedPayloadS2CPacket}. The chunk with offset
+ *  0 starts a new transfer, and the chunks are sent in order. Once all chunks were sent, the transfer is committed by a
+ *  {@link CachedPayloadS2CPacket} with the same hash and no payload.
+ *
+ *  @param channel      the channel of the packet that the payload belongs to
+ *  @param hash         the hash of the whole payload
+ *  @param totalSize    the size of the whole payload, in bytes
+ *  @param offset       the position of this chunk in the payload
+ *  @param data         the contents of this chunk
+ */
+public record CachedPayloadChunkS2CPacket(Identifier channel, long hash, int totalSize, int offset, byte[] data) implements FabricPacket {
+
+    public static final PacketType<CachedPayloadChunkS2CPacket> TYPE = PacketType.create(
+        Origins.identifier("s2c/cached_payload_chunk"), CachedPayloadChunkS2CPacket::read
+    );
+
+    private static CachedPayloadChunkS2CPacket read(PacketByteBuf buffer) {
+        return new CachedPayloadChunkS2CPacket(buffer.readIdentifier(), buffer.readLong(), buffer.readVarInt(), buffer.readVarInt(), buffer.readByteArray());
+    }
+
+    @Override
+    public void write(PacketByteBuf buffer) {
+        buffer.writeIdentifier(channel);
+        buffer.writeLong(hash);
+        buffer.writeVarInt(totalSize);
+        buffer.writeVarInt(offset);
+        buffer.writeByteArray(data);
+    }
+
+    @Override
+    public PacketType<?> getType() {
+        return TYPE;
+    }
+
+}
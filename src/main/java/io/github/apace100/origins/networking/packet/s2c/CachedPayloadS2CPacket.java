@@ -0,0 +1,37 @@
+package io.github.apace100.origins.networking.packet.s2c;
+
+import io.github.apace100.origins.Origins;
+import net.fabricmc.fabric.api.networking.v1.FabricPacket;
+import net.fabricmc.fabric.api.networking.v1.PacketType;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.util.Identifier;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ *  @param channel  the channel of the packet that the payload belongs to
+ *  @param hash     the hash of the payload
+ *  @param payload  the payload, or null if the client already has the payload with the specified hash
+ */
+public record CachedPayloadS2CPacket(Identifier channel, long hash, @Nullable byte[] payload) implements FabricPacket {
+
+    public static final PacketType<CachedPayloadS2CPacket> TYPE = PacketType.create(
+        Origins.identifier("s2c/cached_payload"), CachedPayloadS2CPacket::read
+    );
+
+    private static CachedPayloadS2CPacket read(PacketByteBuf buffer) {
+        return new CachedPayloadS2CPacket(buffer.readIdentifier(), buffer.readLong(), buffer.readNullable(PacketByteBuf::readByteArray));
+    }
+
+    @Override
+    public void write(PacketByteBuf buffer) {
+        buffer.writeIdentifier(channel);
+        buffer.writeLong(hash);
+        buffer.writeNullable(payload, PacketByteBuf::writeByteArray);
+    }
+
+    @Override
+    public PacketType<?> getType() {
+        return TYPE;
+    }
+
+}
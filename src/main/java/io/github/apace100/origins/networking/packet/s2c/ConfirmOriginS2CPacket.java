@@ -1,25 +1,65 @@
 package io.github.apace100.origins.networking.packet.s2c;
 
 import io.github.apace100.origins.Origins;
+import io.github.apace100.origins.networking.packet.RawLayerOptions;
+import io.github.apace100.origins.origin.OriginLayers;
+import io.github.apace100.origins.origin.OriginRegistry;
 import net.fabricmc.fabric.api.networking.v1.FabricPacket;
 import net.fabricmc.fabric.api.networking.v1.PacketType;
+import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.network.PacketByteBuf;
 import net.minecraft.util.Identifier;
+import org.jetbrains.annotations.Nullable;
 
-public record ConfirmOriginS2CPacket(Identifier layerId, Identifier originId) implements FabricPacket {
+import java.util.List;
+
+/**
+ *  @param layerRawId       the raw ID of the layer in the {@link io.github.apace100.origins.origin.IdPalette} of the
+ *                          layer registry
+ *  @param originRawId      the raw ID of the origin in the {@link io.github.apace100.origins.origin.IdPalette} of the
+ *                          origin registry
+ *  @param remainingLayers  the options of the layers the player still has to choose an origin in, which may have
+ *                          changed because of the chosen origin
+ */
+public record ConfirmOriginS2CPacket(int layerRawId, int originRawId, List<RawLayerOptions> remainingLayers) implements FabricPacket {
 
     public static final PacketType<ConfirmOriginS2CPacket> TYPE = PacketType.create(
         Origins.identifier("s2c/confirm_origin"), ConfirmOriginS2CPacket::read
     );
 
+    public static ConfirmOriginS2CPacket create(PlayerEntity player, Identifier layerId, Identifier originId) {
+        return new ConfirmOriginS2CPacket(
+            OriginLayers.snapshot().palette().getRawId(layerId),
+            OriginRegistry.snapshot().palette().getRawId(originId),
+            RawLayerOptions.ofUnchosenLayers(player)
+        );
+    }
+
     private static ConfirmOriginS2CPacket read(PacketByteBuf buffer) {
-        return new ConfirmOriginS2CPacket(buffer.readIdentifier(), buffer.readIdentifier());
+        return new ConfirmOriginS2CPacket(buffer.readVarInt(), buffer.readVarInt(), buffer.readList(RawLayerOptions::read));
     }
 
     @Override
     public void write(PacketByteBuf buffer) {
-         buffer.writeIdentifier(layerId);
-         buffer.writeIdentifier(originId);
+        buffer.writeVarInt(layerRawId);
+        buffer.writeVarInt(originRawId);
+        buffer.writeCollection(remainingLayers, (layerBuffer, layer) -> layer.write(layerBuffer));
+    }
+
+    /**
+     *  @return the ID of the layer, or null if the current layer registry doesn't have a layer with its raw ID
+     */
+    @Nullable
+    public Identifier layerId() {
+        return OriginLayers.snapshot().palette().getId(layerRawId);
+    }
+
+    /**
+     *  @return the ID of the origin, or null if the current origin registry doesn't have an origin with its raw ID
+     */
+    @Nullable
+    public Identifier originId() {
+        return OriginRegistry.snapshot().palette().getId(originRawId);
     }
 
     @Override
@@ -0,0 +1,76 @@
+package io.github.apace100.origins.networking.packet.s2c;
+
+import io.github.apace100.origins.Origins;
+import io.github.apace100.origins.networking.packet.RawLayerOptions;
+import io.github.apace100.origins.origin.OriginLayer;
+import io.github.apace100.origins.origin.OriginLayers;
+import io.github.apace100.origins.origin.OriginRegistry;
+import net.fabricmc.fabric.api.networking.v1.FabricPacket;
+import net.fabricmc.fabric.api.networking.v1.PacketType;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.util.Identifier;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ *  Confirms the origins that were chosen with a {@link io.github.apace100.origins.networking.packet.c2s.ChooseOriginsC2SPacket}.
+ *
+ *  @param origins          the origin of each layer a choice was made in, which may differ from the chosen origin if it
+ *                          was chosen randomly
+ *  @param remainingLayers  the options of the layers the player still has to choose an origin in
+ */
+public record ConfirmOriginsS2CPacket(List<Entry> origins, List<RawLayerOptions> remainingLayers) implements FabricPacket {
+
+    public static final PacketType<ConfirmOriginsS2CPacket> TYPE = PacketType.create(
+        Origins.identifier("s2c/confirm_origins"), ConfirmOriginsS2CPacket::read
+    );
+
+    public static ConfirmOriginsS2CPacket create(PlayerEntity player, List<Entry> origins) {
+        return new ConfirmOriginsS2CPacket(origins, RawLayerOptions.ofUnchosenLayers(player));
+    }
+
+    private static ConfirmOriginsS2CPacket read(PacketByteBuf buffer) {
+        return new ConfirmOriginsS2CPacket(
+            buffer.readList(entryBuffer -> new Entry(entryBuffer.readVarInt(), entryBuffer.readVarInt())),
+            buffer.readList(RawLayerOptions::read)
+        );
+    }
+
+    @Override
+    public void write(PacketByteBuf buffer) {
+        buffer.writeCollection(origins, (entryBuffer, entry) -> {
+            entryBuffer.writeVarInt(entry.layerRawId());
+            entryBuffer.writeVarInt(entry.originRawId());
+        });
+        buffer.writeCollection(remainingLayers, (layerBuffer, layer) -> layer.write(layerBuffer));
+    }
+
+    @Override
+    public PacketType<?> getType() {
+        return TYPE;
+    }
+
+    public record Entry(int layerRawId, int originRawId) {
+
+        public static Entry of(OriginLayer layer, Identifier originId) {
+            return new Entry(
+                OriginLayers.snapshot().palette().getRawId(layer.getIdentifier()),
+                OriginRegistry.snapshot().palette().getRawId(originId)
+            );
+        }
+
+        @Nullable
+        public Identifier layerId() {
+            return OriginLayers.snapshot().palette().getId(layerRawId);
+        }
+
+        @Nullable
+        public Identifier originId() {
+            return OriginRegistry.snapshot().palette().getId(originRawId);
+        }
+
+    }
+
+}
@@ -1,23 +1,36 @@
 package io.github.apace100.origins.networking.packet.s2c;
 
 import io.github.apace100.origins.Origins;
+import io.github.apace100.origins.networking.packet.RawLayerOptions;
 import net.fabricmc.fabric.api.networking.v1.FabricPacket;
 import net.fabricmc.fabric.api.networking.v1.PacketType;
+import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.network.PacketByteBuf;
 
-public record OpenChooseOriginScreenS2CPacket(boolean showBackground) implements FabricPacket {
+import java.util.List;
+
+/**
+ *  @param showBackground   whether to render the dirt background behind the screen
+ *  @param layers           the options of every layer the player has to choose an origin in, computed by the server
+ */
+public record OpenChooseOriginScreenS2CPacket(boolean showBackground, List<RawLayerOptions> layers) implements FabricPacket {
 
     public static final PacketType<OpenChooseOriginScreenS2CPacket> TYPE = PacketType.create(
         Origins.identifier("s2c/open_origin_screen"), OpenChooseOriginScreenS2CPacket::read
     );
 
+    public static OpenChooseOriginScreenS2CPacket create(PlayerEntity player, boolean showBackground) {
+        return new OpenChooseOriginScreenS2CPacket(showBackground, RawLayerOptions.ofUnchosenLayers(player));
+    }
+
     private static OpenChooseOriginScreenS2CPacket read(PacketByteBuf buffer) {
-        return new OpenChooseOriginScreenS2CPacket(buffer.readBoolean());
+        return new OpenChooseOriginScreenS2CPacket(buffer.readBoolean(), buffer.readList(RawLayerOptions::read));
     }
 
     @Override
     public void write(PacketByteBuf buffer) {
         buffer.writeBoolean(showBackground);
+        buffer.writeCollection(layers, (layerBuffer, layer) -> layer.write(layerBuffer));
     }
 
     @Override
@@ -1,46 +1,87 @@
 package io.github.apace100.origins.networking.packet.s2c;
 
+import io.github.apace100.apoli.data.ApoliDataTypes;
+import io.github.apace100.calio.data.SerializableData;
 import io.github.apace100.origins.Origins;
+import io.github.apace100.origins.networking.StringTable;
 import io.github.apace100.origins.origin.OriginLayer;
 import net.fabricmc.fabric.api.networking.v1.FabricPacket;
 import net.fabricmc.fabric.api.networking.v1.PacketType;
 import net.minecraft.network.PacketByteBuf;
 import net.minecraft.util.Identifier;
 
-import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 
+/**
+ *  Syncs the contents of the origin layer registry. The IDs of the layers and of the origins they contain are written
+ *  through a {@link StringTable}. The layers are written in the order of the registry, which the client keeps, so that
+ *  the raw IDs of the layers are the same on both sides.
+ */
 public record SyncOriginLayerRegistryS2CPacket(Map<Identifier, OriginLayer> layers) implements FabricPacket {
 
     public static final PacketType<SyncOriginLayerRegistryS2CPacket> TYPE = PacketType.create(
         Origins.identifier("s2c/sync_origin_layer_registry"), SyncOriginLayerRegistryS2CPacket::read
     );
 
-    private static SyncOriginLayerRegistryS2CPacket read(PacketByteBuf buffer) {
+    public static SyncOriginLayerRegistryS2CPacket read(PacketByteBuf buffer) {
+        return StringTable.read(buffer, (table, payloadBuffer) -> {
 
-        Map<Identifier, OriginLayer> layers = new HashMap<>();
-        int layersSize = buffer.readVarInt();
+            Map<Identifier, OriginLayer> layers = new LinkedHashMap<>();
+            int layersSize = payloadBuffer.readVarInt();
 
-        for (int i = 0; i < layersSize; i++) {
+            for (int i = 0; i < layersSize; i++) {
 
-            Identifier layerId = buffer.readIdentifier();
-            OriginLayer layer = OriginLayer.read(buffer);
+                Identifier layerId = table.readIdentifier(payloadBuffer);
+                List<OriginLayer.ConditionedOrigin> conditionedOrigins = payloadBuffer.readCollection(size -> new LinkedList<>(), conditionedOriginBuffer -> new OriginLayer.ConditionedOrigin(
+                    conditionedOriginBuffer.readNullable(ApoliDataTypes.ENTITY_CONDITION::receive),
+                    table.readIdentifiers(conditionedOriginBuffer)
+                ));
+                List<Identifier> excludedOriginIds = payloadBuffer.readCollection(size -> new LinkedList<>(), table::readIdentifier);
 
-            layers.put(layerId, layer);
+                SerializableData.Instance data = OriginLayer.DATA.read(payloadBuffer);
 
-        }
+                data.set("origins", conditionedOrigins);
+                data.set("exclude_random", excludedOriginIds);
 
-        return new SyncOriginLayerRegistryS2CPacket(layers);
+                layers.put(layerId, OriginLayer.fromData(data));
 
+            }
+
+            return new SyncOriginLayerRegistryS2CPacket(layers);
+
+        });
     }
 
     @Override
     public void write(PacketByteBuf buffer) {
-        buffer.writeMap(
-            layers,
-            PacketByteBuf::writeIdentifier,
-            (valueBuffer, layer) -> layer.write(valueBuffer)
-        );
+        StringTable.write(buffer, (table, payloadBuffer) -> {
+
+            payloadBuffer.writeVarInt(layers.size());
+            layers.forEach((layerId, layer) -> {
+
+                SerializableData.Instance data = layer.toData();
+                List<OriginLayer.ConditionedOrigin> conditionedOrigins = data.get("origins");
+                List<Identifier> excludedOriginIds = data.get("exclude_random");
+
+                table.writeIdentifier(payloadBuffer, layerId);
+                payloadBuffer.writeCollection(conditionedOrigins, (conditionedOriginBuffer, conditionedOrigin) -> {
+                    conditionedOriginBuffer.writeNullable(conditionedOrigin.condition(), ApoliDataTypes.ENTITY_CONDITION::send);
+                    table.writeIdentifiers(conditionedOriginBuffer, conditionedOrigin.origins());
+                });
+                table.writeIdentifiers(payloadBuffer, excludedOriginIds);
+
+                //  The fields that were written above are only replaced in this copy of the data of the layer
+                data.set("origins", List.of());
+                data.set("exclude_random", List.of());
+
+                OriginLayer.DATA.write(payloadBuffer, data);
+
+            });
+
+        });
     }
 
     @Override
@@ -2,27 +2,88 @@ package io.github.apace100.origins.networking.packet.s2c;
 
 import io.github.apace100.calio.data.SerializableData;
 import io.github.apace100.origins.Origins;
+import io.github.apace100.origins.networking.StringTable;
 import io.github.apace100.origins.origin.Origin;
 import net.fabricmc.fabric.api.networking.v1.FabricPacket;
 import net.fabricmc.fabric.api.networking.v1.PacketType;
 import net.minecraft.network.PacketByteBuf;
+import net.minecraft.text.Text;
 import net.minecraft.util.Identifier;
 
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
+/**
+ *  Syncs the contents of the origin registry. The IDs of the origins and their powers, as well as their names and
+ *  descriptions, are written through a {@link StringTable}. The origins are written in the order of the registry, which
+ *  the client keeps, so that the raw IDs of the origins are the same on both sides.
+ */
 public record SyncOriginRegistryS2CPacket(Map<Identifier, SerializableData.Instance> origins) implements FabricPacket {
 
     public static final PacketType<SyncOriginRegistryS2CPacket> TYPE = PacketType.create(
         Origins.identifier("s2c/sync_origin_registry"), SyncOriginRegistryS2CPacket::read
     );
 
-    private static SyncOriginRegistryS2CPacket read(PacketByteBuf buffer) {
-        return new SyncOriginRegistryS2CPacket(buffer.readMap(PacketByteBuf::readIdentifier, Origin.DATA::read));
+    /**
+     *  The fields of {@link Origin#DATA} that are not written through the string table.
+     */
+    private static final List<String> OTHER_FIELDS = List.of("icon", "unchoosable", "order", "impact", "loading_priority", "upgrades");
+
+    public static SyncOriginRegistryS2CPacket read(PacketByteBuf buffer) {
+        return StringTable.read(buffer, (table, payloadBuffer) -> {
+
+            Map<Identifier, SerializableData.Instance> origins = new LinkedHashMap<>();
+            int originsSize = payloadBuffer.readVarInt();
+
+            for (int i = 0; i < originsSize; i++) {
+
+                Identifier id = table.readIdentifier(payloadBuffer);
+                List<Identifier> powerIds = table.readIdentifiers(payloadBuffer);
+
+                Text name = table.readText(payloadBuffer);
+                Text description = table.readText(payloadBuffer);
+
+                SerializableData.Instance data = Origin.DATA.read(payloadBuffer);
+
+                data.set("powers", powerIds);
+                data.set("name", name);
+                data.set("description", description);
+
+                origins.put(id, data);
+
+            }
+
+            return new SyncOriginRegistryS2CPacket(origins);
+
+        });
     }
 
     @Override
     public void write(PacketByteBuf buffer) {
-        buffer.writeMap(origins, PacketByteBuf::writeIdentifier, Origin.DATA::write);
+        StringTable.write(buffer, (table, payloadBuffer) -> {
+
+            payloadBuffer.writeVarInt(origins.size());
+            origins.forEach((id, data) -> {
+
+                table.writeIdentifier(payloadBuffer, id);
+                table.writeIdentifiers(payloadBuffer, data.get("powers"));
+
+                table.writeText(payloadBuffer, data.get("name"));
+                table.writeText(payloadBuffer, data.get("description"));
+
+                SerializableData.Instance otherData = Origin.DATA.new Instance();
+                OTHER_FIELDS.forEach(field -> otherData.set(field, data.get(field)));
+
+                otherData.set("powers", List.of());
+                otherData.set("name", null);
+                otherData.set("description", null);
+
+                Origin.DATA.write(payloadBuffer, otherData);
+
+            });
+
+        });
     }
 
     @Override
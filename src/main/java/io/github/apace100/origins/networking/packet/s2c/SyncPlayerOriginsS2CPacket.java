@@ -0,0 +1,42 @@
+package io.github.apace100.origins.networking.packet.s2c;
+
+import io.github.apace100.origins.Origins;
+import net.fabricmc.fabric.api.networking.v1.FabricPacket;
+import net.fabricmc.fabric.api.networking.v1.PacketType;
+import net.minecraft.network.PacketByteBuf;
+
+import java.util.List;
+
+/**
+ *  Bundles the origin component sync data of several players into a single packet.
+ *
+ *  @param entries  the ID of each player entity, and the data written by its origin component for the recipient
+ */
+public record SyncPlayerOriginsS2CPacket(List<Entry> entries) implements FabricPacket {
+
+    public static final PacketType<SyncPlayerOriginsS2CPacket> TYPE = PacketType.create(
+        Origins.identifier("s2c/sync_player_origins"), SyncPlayerOriginsS2CPacket::read
+    );
+
+    private static SyncPlayerOriginsS2CPacket read(PacketByteBuf buffer) {
+        return new SyncPlayerOriginsS2CPacket(buffer.readList(entryBuffer -> new Entry(entryBuffer.readVarInt(), entryBuffer.readByteArray())));
+    }
+
+    @Override
+    public void write(PacketByteBuf buffer) {
+        buffer.writeCollection(entries, (entryBuffer, entry) -> {
+            entryBuffer.writeVarInt(entry.entityId());
+            entryBuffer.writeByteArray(entry.data());
+        });
+    }
+
+    @Override
+    public PacketType<?> getType() {
+        return TYPE;
+    }
+
+    public record Entry(int entityId, byte[] data) {
+
+    }
+
+}
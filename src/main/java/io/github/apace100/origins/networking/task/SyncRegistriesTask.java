@@ -0,0 +1,32 @@
+package io.github.apace100.origins.networking.task;
+
+import io.github.apace100.origins.networking.packet.RegistryHashesPacket;
+import net.fabricmc.fabric.api.networking.v1.ServerConfigurationNetworking;
+import net.minecraft.network.packet.Packet;
+import net.minecraft.server.network.ServerPlayerConfigurationTask;
+import net.minecraft.util.Identifier;
+
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ *  Sends the hashes of the origin, layer and badge registries to the client, which replies with the hashes of those it
+ *  has cached. The registries that the client doesn't have are then sent before the task is completed, so that the
+ *  client has received all of them before the player joins the world. The client only decodes them once the player
+ *  joined, since decoding depends on the registries that the registry sync of Fabric remaps during this phase.
+ */
+public record SyncRegistriesTask(Map<Identifier, Long> hashes) implements ServerPlayerConfigurationTask {
+
+    public static final ServerPlayerConfigurationTask.Key KEY = new ServerPlayerConfigurationTask.Key("origins:sync_registries");
+
+    @Override
+    public void sendPacket(Consumer<Packet<?>> sender) {
+        sender.accept(ServerConfigurationNetworking.createS2CPacket(new RegistryHashesPacket(hashes)));
+    }
+
+    @Override
+    public Key getKey() {
+        return KEY;
+    }
+
+}
@@ -0,0 +1,83 @@
+package io.github.apace100.origins.origin;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.minecraft.util.Identifier;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+
+/**
+ *  Maps the IDs of the entries of a {@link RegistrySnapshot} to their position in the snapshot (their raw ID), so that
+ *  packets can refer to an entry with a single varint instead of its full ID. Since the contents of a registry are synced
+ *  to clients in the same order, both sides end up with the same palette without having to send it separately.
+ */
+public final class IdPalette {
+
+    public static final IdPalette EMPTY = new IdPalette(ImmutableList.of());
+
+    private final ImmutableList<Identifier> ids;
+    private final Object2IntMap<Identifier> rawIds;
+    private final int hash;
+
+    private IdPalette(ImmutableList<Identifier> ids) {
+
+        this.ids = ids;
+        this.rawIds = new Object2IntOpenHashMap<>(ids.size());
+        this.rawIds.defaultReturnValue(-1);
+
+        Hasher hasher = Hashing.farmHashFingerprint64().newHasher();
+        for (int rawId = 0; rawId < ids.size(); rawId++) {
+
+            Identifier id = ids.get(rawId);
+
+            rawIds.put(id, rawId);
+            hasher.putString(id.toString(), StandardCharsets.UTF_8);
+
+        }
+
+        this.hash = hasher.hash().asInt();
+
+    }
+
+    public static IdPalette of(Collection<Identifier> ids) {
+        return ids.isEmpty() ? EMPTY : new IdPalette(ImmutableList.copyOf(ids));
+    }
+
+    /**
+     *  @return the raw ID of the specified ID, or -1 if it is not part of the palette
+     */
+    public int getRawId(Identifier id) {
+        return rawIds.getInt(id);
+    }
+
+    @Nullable
+    public Identifier getId(int rawId) {
+        return rawId >= 0 && rawId < ids.size() ? ids.get(rawId) : null;
+    }
+
+    public int size() {
+        return ids.size();
+    }
+
+    /**
+     *  @return a hash of the IDs and their order, which can be used to check whether two palettes map the same raw IDs
+     *          to the same IDs
+     */
+    public int hash() {
+        return hash;
+    }
+
+    /**
+     *  @return a hash of the layer and origin palettes together, which packets that refer to both layers and origins by
+     *          their raw IDs include to check whether both sides use the same palettes
+     */
+    public static int hash(IdPalette layerPalette, IdPalette originPalette) {
+        return 31 * layerPalette.hash() + originPalette.hash();
+    }
+
+}
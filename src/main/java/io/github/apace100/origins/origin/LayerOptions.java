@@ -0,0 +1,44 @@
+package io.github.apace100.origins.origin;
+
+import net.minecraft.entity.player.PlayerEntity;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ *  The origins a player can choose from in an origin layer. These are computed by the server when it asks the player to
+ *  choose an origin, so that the client doesn't have to evaluate the conditions of the layer against its own (possibly
+ *  stale) state of the player.
+ *
+ *  @param layer            the origin layer
+ *  @param origins          the choosable origins, sorted by impact and order
+ *  @param randomOrigins    the origins that can be chosen randomly, sorted by impact and order
+ *  @param optionCount      the amount of options, which includes the random option if random origins are allowed
+ */
+public record LayerOptions(OriginLayer layer, List<Origin> origins, List<Origin> randomOrigins, int optionCount) {
+
+    public static final Comparator<Origin> IMPACT_ORDER = Comparator.comparingInt((Origin origin) -> origin.getImpact().getImpactValue()).thenComparingInt(Origin::getOrder);
+
+    public static LayerOptions compute(OriginLayer layer, PlayerEntity player) {
+
+        OriginLayerIndex index = layer.getIndex();
+
+        List<Origin> origins = new ArrayList<>();
+        index.forEachOrigin(player, origin -> {
+            if (origin.isChoosable()) {
+                origins.add(origin);
+            }
+        });
+
+        List<Origin> randomOrigins = new ArrayList<>();
+        index.forEachRandomOrigin(player, randomOrigins::add);
+
+        origins.sort(IMPACT_ORDER);
+        randomOrigins.sort(IMPACT_ORDER);
+
+        return new LayerOptions(layer, origins, randomOrigins, index.getOptionCount(player));
+
+    }
+
+}
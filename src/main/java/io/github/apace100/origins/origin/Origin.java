@@ -1,5 +1,7 @@
 package io.github.apace100.origins.origin;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.gson.JsonObject;
 import io.github.apace100.apoli.power.MultiplePowerType;
@@ -11,6 +13,7 @@ import io.github.apace100.origins.Origins;
 import io.github.apace100.origins.data.CompatibilityDataTypes;
 import io.github.apace100.origins.data.OriginsDataTypes;
 import io.github.apace100.origins.registry.ModComponents;
+import io.github.apace100.origins.util.ContentFingerprint;
 import net.minecraft.advancement.AdvancementEntry;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.player.PlayerEntity;
@@ -22,6 +25,7 @@ import net.minecraft.text.Text;
 import net.minecraft.util.Identifier;
 
 import java.util.*;
+import java.util.function.Predicate;
 
 public class Origin {
 
@@ -62,7 +66,8 @@ public class Origin {
     }
 
     private final List<OriginUpgrade> upgrades = new LinkedList<>();
-    private final List<PowerType<?>> powerTypes = new LinkedList<>();
+    private ImmutableList<PowerType<?>> powerTypes = ImmutableList.of();
+    private ImmutableSet<Identifier> powerIds = ImmutableSet.of();
     private final Identifier identifier;
     private final ItemStack displayItem;
     private final Impact impact;
@@ -79,6 +84,7 @@ public class Origin {
     private boolean isChoosable;
     private boolean isSpecial;
 
+    private volatile Long fingerprint;
 
     public Origin(Identifier id, ItemStack icon, Impact impact, int order, int loadingPriority) {
         this.identifier = id;
@@ -91,6 +97,7 @@ public class Origin {
 
     public Origin addUpgrade(OriginUpgrade upgrade) {
         this.upgrades.add(upgrade);
+        this.fingerprint = null;
         return this;
     }
 
@@ -109,16 +116,18 @@ public class Origin {
     }
 
     public Origin add(PowerType<?>... powerTypes) {
-        this.powerTypes.addAll(Lists.newArrayList(powerTypes));
+        this.setPowerTypes(ImmutableList.<PowerType<?>>builder().addAll(this.powerTypes).add(powerTypes).build());
+        this.fingerprint = null;
         return this;
     }
 
     public void removePowerType(PowerType<?> powerType) {
-        this.powerTypes.remove(powerType);
+        this.removePowerTypesIf(powerType::equals);
     }
 
     protected Origin setUnchoosable() {
         this.isChoosable = false;
+        this.fingerprint = null;
         return this;
     }
 
@@ -129,39 +138,31 @@ public class Origin {
 
     public Origin setName(String name) {
         this.nameTranslationKey = name;
+        this.fingerprint = null;
         return this;
     }
 
     public Origin setNameText(Text name) {
         this.name = name;
+        this.fingerprint = null;
         return this;
     }
 
     public Origin setDescription(String description) {
         this.descriptionTranslationKey = description;
+        this.fingerprint = null;
         return this;
     }
 
     public Origin setDescriptionText(Text description) {
         this.description = description;
+        this.fingerprint = null;
         return this;
     }
 
     public boolean hasPowerType(PowerType<?> powerType) {
-        if(powerType.getIdentifier() == null) {
-            return false;
-        }
-        if(this.powerTypes.contains(powerType)) {
-            return true;
-        }
-        for (PowerType<?> pt : this.powerTypes) {
-            if (pt instanceof MultiplePowerType) {
-                if(((MultiplePowerType<?>)pt).getSubPowers().contains(powerType.getIdentifier())) {
-                    return true;
-                }
-            }
-        }
-        return false;
+        return powerType.getIdentifier() != null
+            && powerIds.contains(powerType.getIdentifier());
     }
 
     public int getLoadingPriority() {
@@ -176,10 +177,58 @@ public class Origin {
         return this.isChoosable;
     }
 
+    /**
+     *  @return an immutable list of the power types of this origin
+     */
     public List<PowerType<?>> getPowerTypes() {
         return powerTypes;
     }
 
+    /**
+     *  @return the IDs of every power this origin grants, including the sub-powers of multiple powers
+     */
+    public Set<Identifier> getPowerIds() {
+        return powerIds;
+    }
+
+    /**
+     *  Removes the power types that match the specified predicate.
+     */
+    void removePowerTypesIf(Predicate<PowerType<?>> predicate) {
+
+        List<PowerType<?>> remainingPowerTypes = this.powerTypes.stream()
+            .filter(Predicate.not(predicate))
+            .toList();
+
+        if (remainingPowerTypes.size() != this.powerTypes.size()) {
+            this.setPowerTypes(remainingPowerTypes);
+            this.fingerprint = null;
+        }
+
+    }
+
+    private void setPowerTypes(Collection<PowerType<?>> powerTypes) {
+
+        ImmutableList<PowerType<?>> newPowerTypes = ImmutableList.copyOf(powerTypes);
+        ImmutableSet.Builder<Identifier> newPowerIds = ImmutableSet.builder();
+
+        for (PowerType<?> powerType : newPowerTypes) {
+
+            if (powerType.getIdentifier() != null) {
+                newPowerIds.add(powerType.getIdentifier());
+            }
+
+            if (powerType instanceof MultiplePowerType<?> multiplePowerType) {
+                newPowerIds.addAll(multiplePowerType.getSubPowers());
+            }
+
+        }
+
+        this.powerTypes = newPowerTypes;
+        this.powerIds = newPowerIds.build();
+
+    }
+
     public Impact getImpact() {
         return impact;
     }
@@ -214,6 +263,28 @@ public class Origin {
         return this.order;
     }
 
+    /**
+     *  @return a fingerprint of the ID and the serialized data of this origin, which only changes if the definition of
+     *          the origin changes
+     */
+    public long getFingerprint() {
+
+        Long fingerprint = this.fingerprint;
+        if (fingerprint == null) {
+            this.fingerprint = fingerprint = ContentFingerprint.of(identifier, DATA, toData());
+        }
+
+        return fingerprint;
+
+    }
+
+    /**
+     *  @return whether the other origin has the same ID and data as this origin
+     */
+    public boolean isSameDefinition(Origin other) {
+        return this == other || this.getFingerprint() == other.getFingerprint();
+    }
+
     public SerializableData.Instance toData() {
 
         SerializableData.Instance data = DATA.new Instance();
@@ -252,14 +323,7 @@ public class Origin {
             origin.setUnchoosable();
         }
 
-        ((List<Identifier>)data.get("powers")).forEach(powerId -> {
-            try {
-                PowerType<?> powerType = PowerTypeRegistry.get(powerId);
-                origin.add(powerType);
-            } catch(IllegalArgumentException e) {
-                Origins.LOGGER.error("Origin \"" + id + "\" contained unregistered power: \"" + powerId + "\"");
-            }
-        });
+        origin.setPowerTypes(resolvePowerTypes(id, data.get("powers")));
 
         if(data.isPresent("upgrades")) {
             ((List<OriginUpgrade>)data.get("upgrades")).forEach(origin::addUpgrade);
@@ -271,6 +335,21 @@ public class Origin {
         return origin;
     }
 
+    static List<PowerType<?>> resolvePowerTypes(Identifier id, List<Identifier> powerIds) {
+
+        List<PowerType<?>> powerTypes = new ArrayList<>();
+        powerIds.forEach(powerId -> {
+            try {
+                powerTypes.add(PowerTypeRegistry.get(powerId));
+            } catch(IllegalArgumentException e) {
+                Origins.LOGGER.error("Origin \"" + id + "\" contained unregistered power: \"" + powerId + "\"");
+            }
+        });
+
+        return powerTypes;
+
+    }
+
     public static Origin read(PacketByteBuf buffer) {
         Identifier id = new Identifier(buffer.readString());
         return createFromData(id, DATA.read(buffer));
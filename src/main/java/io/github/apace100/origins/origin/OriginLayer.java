@@ -7,6 +7,7 @@ import io.github.apace100.apoli.power.factory.condition.ConditionFactory;
 import io.github.apace100.calio.data.SerializableData;
 import io.github.apace100.calio.data.SerializableDataTypes;
 import io.github.apace100.origins.data.OriginsDataTypes;
+import io.github.apace100.origins.util.ContentFingerprint;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.network.PacketByteBuf;
@@ -14,11 +15,11 @@ import net.minecraft.text.Text;
 import net.minecraft.util.Identifier;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Objects;
 import java.util.function.Predicate;
-import java.util.stream.Collectors;
 
 @SuppressWarnings("unused")
 public class OriginLayer implements Comparable<OriginLayer> {
@@ -73,6 +74,11 @@ public class OriginLayer implements Comparable<OriginLayer> {
 
     private boolean hidden = false;
 
+    private volatile OriginLayerIndex index;
+    private volatile Long fingerprint;
+
+    volatile int rawId = -1;
+
     public int getOrder() {
         return order;
     }
@@ -181,6 +187,14 @@ public class OriginLayer implements Comparable<OriginLayer> {
         return id;
     }
 
+    /**
+     *  @return the raw ID of this layer in the {@link IdPalette} of the layer registry it was last published in, or -1
+     *          if it was never published. Only refers to this layer if it is still part of the current registry.
+     */
+    public int getRawId() {
+        return rawId;
+    }
+
     public boolean isEnabled() {
         return enabled;
     }
@@ -202,35 +216,37 @@ public class OriginLayer implements Comparable<OriginLayer> {
     }
 
     public List<Identifier> getOrigins(@Nullable PlayerEntity playerEntity) {
-        return conditionedOrigins
-            .stream()
-            .filter(co -> playerEntity == null || co.isConditionFulfilled(playerEntity))
-            .flatMap(co -> co.origins.stream())
-            .filter(OriginRegistry::contains)
-            .collect(Collectors.toList());
+
+        List<Identifier> origins = new ArrayList<>();
+        getIndex().forEachOrigin(playerEntity, origin -> origins.add(origin.getIdentifier()));
+
+        return origins;
+
     }
 
     public int getOriginOptionCount(PlayerEntity playerEntity) {
+        return getIndex().getOptionCount(playerEntity);
+    }
 
-        int choosableOrigins = (int) getOrigins(playerEntity)
-            .stream()
-            .map(OriginRegistry::get)
-            .filter(Origin::isChoosable)
-            .count();
+    /**
+     *  @return the precompiled origins of this layer, which is re-compiled if the origin registry changed since the
+     *          last time it was compiled
+     */
+    public OriginLayerIndex getIndex() {
 
-        if (choosableOrigins > 1 && (isRandomAllowed && !getRandomOrigins(playerEntity).isEmpty())) {
-            choosableOrigins++;
+        OriginLayerIndex index = this.index;
+        RegistrySnapshot<Origin> origins = OriginRegistry.snapshot();
+
+        if (index == null || index.getGeneration() != origins.generation()) {
+            this.index = index = OriginLayerIndex.compile(conditionedOrigins, originsExcludedFromRandom, isRandomAllowed, doesRandomAllowUnchoosable, origins);
         }
 
-        return choosableOrigins;
+        return index;
 
     }
 
     public boolean contains(Identifier originId) {
-        return conditionedOrigins
-            .stream()
-            .flatMap(co -> co.origins().stream())
-            .anyMatch(originId::equals);
+        return getIndex().contains(originId);
     }
 
     public boolean contains(Origin origin) {
@@ -238,17 +254,35 @@ public class OriginLayer implements Comparable<OriginLayer> {
     }
 
     public boolean contains(Identifier originId, PlayerEntity playerEntity) {
-        return conditionedOrigins
-            .stream()
-            .filter(co -> co.isConditionFulfilled(playerEntity))
-            .flatMap(co -> co.origins().stream())
-            .anyMatch(originId::equals);
+        return getIndex().contains(originId, playerEntity);
     }
 
     public boolean contains(Origin origin, PlayerEntity playerEntity) {
         return contains(origin.getIdentifier(), playerEntity);
     }
 
+    /**
+     *  @return a fingerprint of the ID and the serialized data of this layer, which only changes if the definition of
+     *          the layer changes
+     */
+    public long getFingerprint() {
+
+        Long fingerprint = this.fingerprint;
+        if (fingerprint == null) {
+            this.fingerprint = fingerprint = ContentFingerprint.of(id, DATA, toData());
+        }
+
+        return fingerprint;
+
+    }
+
+    /**
+     *  @return whether the other layer has the same ID and data as this layer
+     */
+    public boolean isSameDefinition(OriginLayer other) {
+        return this == other || this.getFingerprint() == other.getFingerprint();
+    }
+
     public boolean isRandomAllowed() {
         return isRandomAllowed;
     }
@@ -258,14 +292,12 @@ public class OriginLayer implements Comparable<OriginLayer> {
     }
 
     public List<Identifier> getRandomOrigins(PlayerEntity playerEntity) {
-        return conditionedOrigins
-            .stream()
-            .filter(co -> co.isConditionFulfilled(playerEntity))
-            .flatMap(co -> co.origins.stream())
-            .filter(OriginRegistry::contains)
-            .filter(oId -> !originsExcludedFromRandom.contains(oId))
-            .filter(oid -> doesRandomAllowUnchoosable || OriginRegistry.get(oid).isChoosable())
-            .collect(Collectors.toList());
+
+        List<Identifier> origins = new ArrayList<>();
+        getIndex().forEachRandomOrigin(playerEntity, origin -> origins.add(origin.getIdentifier()));
+
+        return origins;
+
     }
 
     public SerializableData.Instance toData() {
@@ -324,6 +356,9 @@ public class OriginLayer implements Comparable<OriginLayer> {
 
     public void merge(OriginLayer otherLayer) {
 
+        this.index = null;
+        this.fingerprint = null;
+
         this.order = otherLayer.order;
         this.enabled = otherLayer.enabled;
 
@@ -0,0 +1,341 @@
+package io.github.apace100.origins.origin;
+
+import io.github.apace100.origins.component.LayerConditionCache;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.util.Identifier;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ *  A precompiled view of the origins of an {@link OriginLayer}, which resolves the IDs of the origins of every
+ *  {@link OriginLayer.ConditionedOrigin} against the origin registry once, instead of on every query. The origins of
+ *  all conditioned origins are stored in a single array, in which every conditioned origin (or "group") occupies a
+ *  contiguous range, so that the queries only need to evaluate the condition of each group once and don't need to
+ *  allocate anything.<br>
+ *  <br>
+ *  An index is tied to a specific generation of the origin registry, and is re-compiled by the layer when the registry
+ *  changes.
+ */
+public final class OriginLayerIndex {
+
+    private final long generation;
+
+    private final List<OriginLayer.ConditionedOrigin> groups;
+    private final int[] groupStarts;
+    private final BitSet allGroups;
+    private final boolean conditioned;
+
+    private final Origin[] origins;
+    private final BitSet choosable;
+    private final BitSet randomEligible;
+
+    private final int[] choosableCounts;
+    private final int[] randomCounts;
+
+    private final Origin[] unconditionalChoosable;
+    private final Map<Identifier, int[]> memberGroups;
+
+    private final boolean randomAllowed;
+
+    private OriginLayerIndex(long generation, List<OriginLayer.ConditionedOrigin> groups, int[] groupStarts, Origin[] origins, BitSet choosable, BitSet randomEligible, Origin[] unconditionalChoosable, Map<Identifier, int[]> memberGroups, boolean randomAllowed) {
+
+        this.generation = generation;
+        this.groups = groups;
+        this.groupStarts = groupStarts;
+        this.origins = origins;
+        this.choosable = choosable;
+        this.randomEligible = randomEligible;
+        this.unconditionalChoosable = unconditionalChoosable;
+        this.memberGroups = memberGroups;
+        this.randomAllowed = randomAllowed;
+
+        this.choosableCounts = new int[groups.size()];
+        this.randomCounts = new int[groups.size()];
+
+        this.allGroups = new BitSet(groups.size());
+        this.allGroups.set(0, groups.size());
+
+        boolean conditioned = false;
+        for (int group = 0; group < groups.size(); group++) {
+
+            conditioned |= groups.get(group).condition() != null;
+
+            for (int i = groupStarts[group]; i < groupStarts[group + 1]; i++) {
+                choosableCounts[group] += choosable.get(i) ? 1 : 0;
+                randomCounts[group] += randomEligible.get(i) ? 1 : 0;
+            }
+
+        }
+
+        this.conditioned = conditioned;
+
+    }
+
+    static OriginLayerIndex compile(List<OriginLayer.ConditionedOrigin> conditionedOrigins, Collection<Identifier> excludedFromRandom, boolean randomAllowed, boolean randomAllowsUnchoosable, RegistrySnapshot<Origin> registry) {
+
+        List<OriginLayer.ConditionedOrigin> groups = List.copyOf(conditionedOrigins);
+        Set<Identifier> excludedIds = new HashSet<>(excludedFromRandom);
+
+        List<Origin> origins = new ArrayList<>();
+        List<Origin> unconditionalChoosable = new ArrayList<>();
+
+        BitSet choosable = new BitSet();
+        BitSet randomEligible = new BitSet();
+
+        int[] groupStarts = new int[groups.size() + 1];
+        Map<Identifier, int[]> memberGroups = new HashMap<>();
+
+        for (int group = 0; group < groups.size(); group++) {
+
+            OriginLayer.ConditionedOrigin conditionedOrigin = groups.get(group);
+            groupStarts[group] = origins.size();
+
+            for (Identifier originId : conditionedOrigin.origins()) {
+
+                int[] prevGroups = memberGroups.getOrDefault(originId, new int[0]);
+                int[] newGroups = Arrays.copyOf(prevGroups, prevGroups.length + 1);
+
+                newGroups[prevGroups.length] = group;
+                memberGroups.put(originId, newGroups);
+
+                Origin origin = registry.get(originId);
+                if (origin == null) {
+                    continue;
+                }
+
+                int index = origins.size();
+                origins.add(origin);
+
+                choosable.set(index, origin.isChoosable());
+                randomEligible.set(index, !excludedIds.contains(originId) && (randomAllowsUnchoosable || origin.isChoosable()));
+
+                if (conditionedOrigin.condition() == null && origin.isChoosable()) {
+                    unconditionalChoosable.add(origin);
+                }
+
+            }
+
+        }
+
+        groupStarts[groups.size()] = origins.size();
+        return new OriginLayerIndex(
+            registry.generation(),
+            groups,
+            groupStarts,
+            origins.toArray(Origin[]::new),
+            choosable,
+            randomEligible,
+            unconditionalChoosable.toArray(Origin[]::new),
+            memberGroups,
+            randomAllowed
+        );
+
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     *  @return whether any origin of the layer is tied to a condition, in which case the options of a player depend on
+     *          their state
+     */
+    public boolean isConditioned() {
+        return conditioned;
+    }
+
+    /**
+     *  @return whether the layer doesn't contain any registered origin
+     */
+    public boolean isEmpty() {
+        return origins.length == 0;
+    }
+
+    /**
+     *  @return the choosable origins of the layer that are not tied to a condition
+     */
+    public Origin[] getUnconditionalChoosableOrigins() {
+        return unconditionalChoosable.clone();
+    }
+
+    public boolean contains(Identifier originId) {
+        return memberGroups.containsKey(originId);
+    }
+
+    /**
+     *  @return whether the origin with the specified ID is part of a group of the layer whose condition is fulfilled
+     *          by the specified player
+     */
+    public boolean contains(Identifier originId, @Nullable PlayerEntity player) {
+
+        int[] groupsOfOrigin = memberGroups.get(originId);
+        if (groupsOfOrigin == null) {
+            return false;
+        }
+
+        BitSet availableGroups = getAvailableGroups(player);
+        for (int group : groupsOfOrigin) {
+            if (availableGroups.get(group)) {
+                return true;
+            }
+        }
+
+        return false;
+
+    }
+
+    public int getChoosableCount(@Nullable PlayerEntity player) {
+        return conditioned
+            ? sum(choosableCounts, getAvailableGroups(player))
+            : unconditionalChoosable.length;
+    }
+
+    public int getRandomCount(@Nullable PlayerEntity player) {
+        return sum(randomCounts, getAvailableGroups(player));
+    }
+
+    /**
+     *  @return the amount of options the specified player has to choose from in the layer, including the option to
+     *          choose a random origin (if it is allowed and there is more than one choosable origin)
+     */
+    public int getOptionCount(@Nullable PlayerEntity player) {
+        return player != null && conditioned
+            ? LayerConditionCache.getOptionCount(player, this)
+            : getOptionCount(allGroups);
+    }
+
+    /**
+     *  @param availableGroups  the groups whose condition is fulfilled, as returned by {@link #testConditions(PlayerEntity)}
+     */
+    public int getOptionCount(BitSet availableGroups) {
+
+        int count = sum(choosableCounts, availableGroups);
+        if (count > 1 && randomAllowed && sum(randomCounts, availableGroups) > 0) {
+            count++;
+        }
+
+        return count;
+
+    }
+
+    /**
+     *  Evaluates the condition of every group of the layer. Prefer the methods that accept a player, which read the
+     *  results of this method through the {@link LayerConditionCache} of the player.
+     *
+     *  @return the groups whose condition is fulfilled by the specified player
+     */
+    public BitSet testConditions(PlayerEntity player) {
+
+        BitSet availableGroups = new BitSet(groups.size());
+        for (int group = 0; group < groups.size(); group++) {
+            availableGroups.set(group, groups.get(group).isConditionFulfilled(player));
+        }
+
+        return availableGroups;
+
+    }
+
+    /**
+     *  @param n    the index of the origin among the choosable origins available to the player
+     *  @return     the nth choosable origin that is available to the player, or null if there are not enough of them
+     */
+    @Nullable
+    public Origin getChoosableOrigin(@Nullable PlayerEntity player, int n) {
+        return getNth(choosable, choosableCounts, player, n);
+    }
+
+    /**
+     *  @param n    the index of the origin among the origins available to the player that can be chosen randomly
+     *  @return     the nth origin that is available to the player and can be chosen randomly, or null if there are not
+     *              enough of them
+     */
+    @Nullable
+    public Origin getRandomOrigin(@Nullable PlayerEntity player, int n) {
+        return getNth(randomEligible, randomCounts, player, n);
+    }
+
+    public void forEachOrigin(@Nullable PlayerEntity player, Consumer<Origin> action) {
+
+        BitSet availableGroups = getAvailableGroups(player);
+        for (int group = 0; group < groups.size(); group++) {
+
+            if (!availableGroups.get(group)) {
+                continue;
+            }
+
+            for (int i = groupStarts[group]; i < groupStarts[group + 1]; i++) {
+                action.accept(origins[i]);
+            }
+
+        }
+
+    }
+
+    public void forEachRandomOrigin(@Nullable PlayerEntity player, Consumer<Origin> action) {
+
+        BitSet availableGroups = getAvailableGroups(player);
+        for (int group = 0; group < groups.size(); group++) {
+
+            if (randomCounts[group] == 0 || !availableGroups.get(group)) {
+                continue;
+            }
+
+            for (int i = randomEligible.nextSetBit(groupStarts[group]); i >= 0 && i < groupStarts[group + 1]; i = randomEligible.nextSetBit(i + 1)) {
+                action.accept(origins[i]);
+            }
+
+        }
+
+    }
+
+    @Nullable
+    private Origin getNth(BitSet origins, int[] counts, @Nullable PlayerEntity player, int n) {
+
+        if (n < 0) {
+            return null;
+        }
+
+        BitSet availableGroups = getAvailableGroups(player);
+        for (int group = 0; group < groups.size(); group++) {
+
+            if (counts[group] == 0 || !availableGroups.get(group)) {
+                continue;
+            }
+
+            if (n >= counts[group]) {
+                n -= counts[group];
+                continue;
+            }
+
+            for (int i = origins.nextSetBit(groupStarts[group]); i >= 0; i = origins.nextSetBit(i + 1)) {
+                if (n-- == 0) {
+                    return this.origins[i];
+                }
+            }
+
+        }
+
+        return null;
+
+    }
+
+    private BitSet getAvailableGroups(@Nullable PlayerEntity player) {
+        return player != null && conditioned
+            ? LayerConditionCache.getAvailableGroups(player, this)
+            : allGroups;
+    }
+
+    private int sum(int[] counts, BitSet availableGroups) {
+
+        int sum = 0;
+        for (int group = availableGroups.nextSetBit(0); group >= 0 && group < counts.length; group = availableGroups.nextSetBit(group + 1)) {
+            sum += counts[group];
+        }
+
+        return sum;
+
+    }
+
+}
@@ -3,16 +3,17 @@ package io.github.apace100.origins.origin;
 import carpet.patches.EntityPlayerMPFake;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import dev.onyxstudios.cca.api.v3.component.ComponentProvider;
 import io.github.apace100.calio.data.IdentifiableMultiJsonDataLoader;
 import io.github.apace100.calio.data.MultiJsonDataContainer;
-import io.github.apace100.calio.data.SerializableData;
 import io.github.apace100.origins.Origins;
 import io.github.apace100.origins.component.OriginComponent;
+import io.github.apace100.origins.component.OriginSyncScheduler;
 import io.github.apace100.origins.integration.OriginDataLoadedCallback;
+import io.github.apace100.origins.networking.CachedPacket;
 import io.github.apace100.origins.networking.packet.s2c.OpenChooseOriginScreenS2CPacket;
 import io.github.apace100.origins.networking.packet.s2c.SyncOriginLayerRegistryS2CPacket;
 import io.github.apace100.origins.registry.ModComponents;
+import io.github.apace100.origins.util.ParallelJsonParser;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
 import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
 import net.fabricmc.fabric.api.resource.IdentifiableResourceReloadListener;
@@ -26,22 +27,28 @@ import net.minecraft.util.profiler.Profiler;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiPredicate;
 import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
 import java.util.stream.IntStream;
 
 public class OriginLayers extends IdentifiableMultiJsonDataLoader implements IdentifiableResourceReloadListener {
 
     public static final Identifier PHASE = Origins.identifier("phase/origin_layers");
 
-    private static final HashMap<Identifier, OriginLayer> LAYERS = new HashMap<>();
+    private static final AtomicReference<RegistrySnapshot<OriginLayer>> SNAPSHOT = new AtomicReference<>(RegistrySnapshot.empty());
+    private static final CachedPacket SYNC_PACKET = CachedPacket.of(SyncOriginLayerRegistryS2CPacket.TYPE, OriginLayers::getGeneration, () -> new SyncOriginLayerRegistryS2CPacket(snapshot().entries()));
     private static final Gson GSON = new GsonBuilder()
         .disableHtmlEscaping()
         .setPrettyPrinting()
         .create();
 
-    private static Identifier prevId = null;
-    private static int prevPriority = Integer.MIN_VALUE;
+    private ParallelJsonParser.Result<OriginLayer> parsedLayers;
+
+    private Map<Identifier, Long> fingerprints = Map.of();
+    private Map<Identifier, OriginLayer> loadedLayers = Map.of();
+    private Map<Identifier, Origin> loadedOrigins = Map.of();
 
     public OriginLayers() {
         super(GSON, "origin_layers", ResourceType.SERVER_DATA);
@@ -49,29 +56,21 @@ public class OriginLayers extends IdentifiableMultiJsonDataLoader implements Ide
         ServerLifecycleEvents.SYNC_DATA_PACK_CONTENTS.register(PHASE, (player, joined) -> {
 
             OriginComponent component = ModComponents.ORIGIN.get(player);
-            Map<Identifier, OriginLayer> layers = new HashMap<>();
+            try (OriginComponent.Edit edit = component.edit()) {
 
-            for (OriginLayer layer : OriginLayers.getLayers()) {
+                for (OriginLayer layer : OriginLayers.getLayers()) {
 
-                layers.put(layer.getIdentifier(), layer);
+                    if (layer.isEnabled() && !component.hasOrigin(layer)) {
+                        edit.setOrigin(layer, Origin.EMPTY);
+                    }
 
-                if (layer.isEnabled() && !component.hasOrigin(layer)) {
-                    component.setOrigin(layer, Origin.EMPTY);
                 }
 
-            }
-
-            ServerPlayNetworking.send(player, new SyncOriginLayerRegistryS2CPacket(layers));
-
-            if (joined) {
-
-                List<ServerPlayerEntity> otherPlayers = player.getServerWorld().getServer().getPlayerManager().getPlayerList();
-                otherPlayers.remove(player);
-
-                otherPlayers.forEach(otherPlayer -> ModComponents.ORIGIN.syncWith(otherPlayer, (ComponentProvider) player));
+                edit.commit();
 
             }
 
+            SYNC_PACKET.send(player);
             postLoading(player, joined);
 
         });
@@ -82,43 +81,49 @@ public class OriginLayers extends IdentifiableMultiJsonDataLoader implements Ide
         OriginComponent component = ModComponents.ORIGIN.get(player);
         boolean mismatch = false;
 
-        for (Map.Entry<OriginLayer, Origin> entry : component.getOrigins().entrySet()) {
+        try (OriginComponent.Edit edit = component.edit()) {
+
+            for (Map.Entry<OriginLayer, Origin> entry : component.getOrigins().entrySet()) {
+
+                OriginLayer oldLayer = entry.getKey();
+                Origin oldOrigin = entry.getValue();
 
-            OriginLayer oldLayer = entry.getKey();
-            Origin oldOrigin = entry.getValue();
+                boolean originOrLayerNotAvailable = !OriginLayers.contains(oldLayer)
+                                                 || !OriginRegistry.contains(oldOrigin);
+                boolean originUnregistered = OriginLayers.contains(oldLayer)
+                                          && !OriginLayers.getLayer(oldLayer.getIdentifier()).contains(oldOrigin);
 
-            boolean originOrLayerNotAvailable = !OriginLayers.contains(oldLayer)
-                                             || !OriginRegistry.contains(oldOrigin);
-            boolean originUnregistered = OriginLayers.contains(oldLayer)
-                                      && !OriginLayers.getLayer(oldLayer.getIdentifier()).contains(oldOrigin);
+                if (originOrLayerNotAvailable || originUnregistered) {
 
-            if (originOrLayerNotAvailable || originUnregistered) {
+                    if (oldOrigin == Origin.EMPTY) {
+                        continue;
+                    }
+
+                    if (originUnregistered) {
+                        Origins.LOGGER.error("Removed unregistered origin \"{}\" from origin layer \"{}\" from player {}!", oldOrigin.getIdentifier(), oldLayer.getIdentifier(), player.getName().getString());
+                        edit.setOrigin(oldLayer, Origin.EMPTY);
+                    } else {
+                        Origins.LOGGER.error("Removed unregistered origin layer \"{}\" from player {}!", oldLayer.getIdentifier(), player.getName().getString());
+                        edit.removeLayer(oldLayer);
+                    }
 
-                if (oldOrigin == Origin.EMPTY) {
                     continue;
+
                 }
 
-                if (originUnregistered) {
-                    Origins.LOGGER.error("Removed unregistered origin \"{}\" from origin layer \"{}\" from player {}!", oldOrigin.getIdentifier(), oldLayer.getIdentifier(), player.getName().getString());
-                    component.setOrigin(oldLayer, Origin.EMPTY);
-                } else {
-                    Origins.LOGGER.error("Removed unregistered origin layer \"{}\" from player {}!", oldLayer.getIdentifier(), player.getName().getString());
-                    component.removeLayer(oldLayer);
+                Origin newOrigin = OriginRegistry.get(oldOrigin.getIdentifier());
+                if (oldOrigin.isSameDefinition(newOrigin)) {
+                    continue;
                 }
 
-                continue;
+                Origins.LOGGER.warn("Mismatched data fields of origin \"{}\" from player {}! Updating...", oldOrigin.getIdentifier(), player.getName().getString());
+                mismatch = true;
 
-            }
+                edit.setOrigin(oldLayer, newOrigin);
 
-            Origin newOrigin = OriginRegistry.get(oldOrigin.getIdentifier());
-            if (oldOrigin.toJson().equals(newOrigin.toJson())) {
-                continue;
             }
 
-            Origins.LOGGER.warn("Mismatched data fields of origin \"{}\" from player {}! Updating...", oldOrigin.getIdentifier(), player.getName().getString());
-            mismatch = true;
-
-            component.setOrigin(oldLayer, newOrigin);
+            edit.commit();
 
         }
 
@@ -146,7 +151,8 @@ public class OriginLayers extends IdentifiableMultiJsonDataLoader implements Ide
             component.selectingOrigin(true);
             component.sync();
 
-            ServerPlayNetworking.send(player, new OpenChooseOriginScreenS2CPacket(true));
+            OriginSyncScheduler.flush(player);
+            ServerPlayNetworking.send(player, OpenChooseOriginScreenS2CPacket.create(player, true));
 
         } else {
             component.sync();
@@ -158,20 +164,38 @@ public class OriginLayers extends IdentifiableMultiJsonDataLoader implements Ide
         return FabricLoader.getInstance().isModLoaded("carpet") && player instanceof EntityPlayerMPFake;
     }
 
+    @Override
+    protected MultiJsonDataContainer prepare(ResourceManager manager, Profiler profiler) {
+
+        MultiJsonDataContainer prepared = super.prepare(manager, profiler);
+
+        profiler.push("origin_layers:parse");
+        parsedLayers = ParallelJsonParser.parse(prepared, fingerprints, (id, jsonElement) -> OriginLayer.fromJson(id, jsonElement.getAsJsonObject()));
+        profiler.pop();
+
+        return prepared;
+
+    }
+
     @Override
     protected void apply(MultiJsonDataContainer prepared, ResourceManager manager, Profiler profiler) {
 
-        clear();
-        prevId = null;
+        ParallelJsonParser.Result<OriginLayer> parsed = parsedLayers;
+        parsedLayers = null;
+
+        Map<Identifier, List<OriginLayer>> layersToMerge = new HashMap<>();
+        Map<Identifier, Long> newFingerprints = new HashMap<>(parsed.fingerprints());
 
-        Map<Identifier, List<OriginLayer>> loadedLayers = new HashMap<>();
+        Identifier prevId = null;
+        int prevPriority = Integer.MIN_VALUE;
 
         Origins.LOGGER.info("Loading origin layer from data files...");
-        prepared.forEach((packName, id, jsonElement) -> {
-            try {
+        for (ParallelJsonParser.Entry<OriginLayer> entry : parsed.entries()) {
+
+            String packName = entry.packName();
+            Identifier id = entry.id();
 
-                SerializableData.CURRENT_NAMESPACE = id.getNamespace();
-                SerializableData.CURRENT_PATH = id.getPath();
+            try {
 
                 if (prevId == null || !prevId.equals(id)) {
 
@@ -180,14 +204,24 @@ public class OriginLayers extends IdentifiableMultiJsonDataLoader implements Ide
 
                 }
 
+                //  The files of this layer did not change since the last reload, so the layer that was merged from them
+                //  back then is kept
+                if (!parsed.changedIds().contains(id)) {
+                    continue;
+                }
+
                 Origins.LOGGER.info("Trying to read origin layer file \"{}\" from data pack [{}]", id, packName);
 
-                OriginLayer layer = OriginLayer.fromJson(id, jsonElement.getAsJsonObject());
+                if (entry.error() != null) {
+                    throw entry.error();
+                }
+
+                OriginLayer layer = entry.result();
                 int loadingPriority = layer.getLoadingPriority();
 
                 if (loadingPriority < prevPriority) {
                     Origins.LOGGER.warn("Ignoring replaced duplicate origin layer \"{}\" with a lower loading priority.", id);
-                    return;
+                    continue;
                 }
 
                 List<String> invalidOrigins = layer.getConditionedOrigins()
@@ -201,7 +235,7 @@ public class OriginLayers extends IdentifiableMultiJsonDataLoader implements Ide
                     Origins.LOGGER.error("Origin layer \"{}\" (from data pack [{}]) contained {} invalid origin(s): {}", layer.id, packName, invalidOrigins.size(), String.join(", ", invalidOrigins));
                 }
 
-                List<OriginLayer> layers = loadedLayers.computeIfAbsent(id, k -> new LinkedList<>());
+                List<OriginLayer> layers = layersToMerge.computeIfAbsent(id, k -> new LinkedList<>());
 
                 if (layer.shouldReplaceConditionedOrigins()) {
                     layers.clear();
@@ -212,11 +246,14 @@ public class OriginLayers extends IdentifiableMultiJsonDataLoader implements Ide
 
             } catch (Exception e) {
                 Origins.LOGGER.error("There was a problem reading origin layer file \"{}\" (skipping): {}", id, e.getMessage());
+                newFingerprints.remove(id);
             }
-        });
+
+        }
 
         Origins.LOGGER.info("Finished loading origin layers. Merging similar origin layers...");
-        loadedLayers.forEach((id, layers) -> {
+        Map<Identifier, OriginLayer> mergedLayers = new HashMap<>();
+        layersToMerge.forEach((id, layers) -> {
 
             OriginLayer[] currentLayer = {null};
             List<OriginLayer> sortedLayers = layers
@@ -234,46 +271,138 @@ public class OriginLayers extends IdentifiableMultiJsonDataLoader implements Ide
 
             }
 
-            OriginLayers.register(id, currentLayer[0]);
+            mergedLayers.put(id, currentLayer[0]);
 
         });
 
-        Origins.LOGGER.info("Finished merging similar origin layers from data files. Read {} origin layers.", loadedLayers.size());
-        OriginDataLoadedCallback.EVENT.invoker().onDataLoaded(false);
+        Map<Identifier, OriginLayer> layers = new LinkedHashMap<>();
+        for (Identifier id : parsed.fingerprints().keySet()) {
 
-        SerializableData.CURRENT_NAMESPACE = null;
-        SerializableData.CURRENT_PATH = null;
+            OriginLayer layer = parsed.changedIds().contains(id)
+                ? mergedLayers.get(id)
+                : loadedLayers.get(id);
+
+            if (layer != null) {
+                layers.put(id, layer);
+            } else {
+                newFingerprints.remove(id);
+            }
+
+        }
+
+        Map<Identifier, Origin> origins = OriginRegistry.snapshot().entries();
+        OriginDataLoadedCallback.Changes changes = new OriginDataLoadedCallback.Changes(
+            getChangedIds(loadedOrigins, origins, Origin::getFingerprint),
+            getChangedIds(loadedLayers, layers, OriginLayer::getFingerprint)
+        );
+
+        fingerprints = newFingerprints;
+        loadedLayers = layers;
+        loadedOrigins = origins;
+
+        publish(layers);
+
+        Origins.LOGGER.info("Finished merging similar origin layers from data files. Read {} origin layers ({} changed since the last reload).", layers.size(), changes.layers().size());
+        OriginDataLoadedCallback.EVENT.invoker().onDataLoaded(false, changes);
+
+    }
+
+    /**
+     *  @return the IDs of the entries that were added, removed or replaced by an entry with a different fingerprint
+     */
+    private static <T> Set<Identifier> getChangedIds(Map<Identifier, T> prevEntries, Map<Identifier, T> entries, ToLongFunction<T> fingerprint) {
+
+        Set<Identifier> changedIds = new HashSet<>();
+        entries.forEach((id, entry) -> {
+
+            T prevEntry = prevEntries.get(id);
+            if (prevEntry != entry && (prevEntry == null || fingerprint.applyAsLong(prevEntry) != fingerprint.applyAsLong(entry))) {
+                changedIds.add(id);
+            }
+
+        });
+
+        prevEntries.keySet()
+            .stream()
+            .filter(Predicate.not(entries::containsKey))
+            .forEach(changedIds::add);
+
+        return changedIds;
+
+    }
+
+    /**
+     *  @return the current contents of the registry. The returned snapshot never changes, even if the registry is
+     *          reloaded while it is being used.
+     */
+    public static RegistrySnapshot<OriginLayer> snapshot() {
+        return SNAPSHOT.get();
+    }
+
+    public static long getGeneration() {
+        return SNAPSHOT.get().generation();
+    }
+
+    /**
+     *  Replaces the contents of the registry with the specified layers in a single step, so that readers either see the
+     *  old or the new layers, but never a mix of both.
+     */
+    public static void publish(Map<Identifier, OriginLayer> layers) {
+
+        layers.forEach((id, layer) -> {
+            layer.id = id;
+            layer.getIndex();
+        });
+
+        assignRawIds(SNAPSHOT.updateAndGet(snapshot -> snapshot.next(layers)));
+
+    }
+
+    private static void assignRawIds(RegistrySnapshot<OriginLayer> snapshot) {
+
+        IdPalette palette = snapshot.palette();
+        for (int rawId = 0; rawId < palette.size(); rawId++) {
+            snapshot.get(palette.getId(rawId)).rawId = rawId;
+        }
 
     }
 
     public static OriginLayer getLayer(Identifier id) {
 
-        if (!LAYERS.containsKey(id)) {
+        OriginLayer layer = snapshot().get(id);
+        if (layer == null) {
             throw new IllegalArgumentException("Could not get layer from id '" + id.toString() + "', as it doesn't exist!");
         }
 
-        else return LAYERS.get(id);
+        else return layer;
 
     }
 
     @Nullable
     public static OriginLayer getNullableLayer(Identifier id) {
-        return LAYERS.get(id);
+        return snapshot().get(id);
     }
 
     public static void register(Identifier id, OriginLayer layer) {
 
-        if (LAYERS.containsKey(id)) {
-            throw new IllegalArgumentException("Duplicate origin layer id tried to register: '" + id + "'");
-        }
-
         layer.id = id;
-        LAYERS.put(id, layer);
+        assignRawIds(SNAPSHOT.updateAndGet(snapshot -> {
+
+            if (snapshot.contains(id)) {
+                throw new IllegalArgumentException("Duplicate origin layer id tried to register: '" + id + "'");
+            }
+
+            Map<Identifier, OriginLayer> layers = new LinkedHashMap<>(snapshot.entries());
+            layers.put(id, layer);
+
+            return snapshot.next(layers);
+
+        }));
 
     }
 
     public static Collection<OriginLayer> getLayers() {
-        return LAYERS.values();
+        return snapshot().values();
     }
 
     public static int getOriginOptionCount(PlayerEntity playerEntity) {
@@ -281,7 +410,7 @@ public class OriginLayers extends IdentifiableMultiJsonDataLoader implements Ide
     }
 
     public static int getOriginOptionCount(PlayerEntity playerEntity, BiPredicate<OriginLayer, OriginComponent> condition) {
-        return LAYERS.values()
+        return snapshot().values()
             .stream()
             .filter(ol -> ol.isEnabled() && ModComponents.ORIGIN.maybeGet(playerEntity).map(oc -> condition.test(ol, oc)).orElse(false))
             .flatMapToInt(ol -> IntStream.of(ol.getOriginOptionCount(playerEntity)))
@@ -293,15 +422,15 @@ public class OriginLayers extends IdentifiableMultiJsonDataLoader implements Ide
     }
 
     public static boolean contains(Identifier id) {
-        return LAYERS.containsKey(id);
+        return snapshot().contains(id);
     }
 
     public static int size() {
-        return LAYERS.size();
+        return snapshot().size();
     }
 
     public static void clear() {
-        LAYERS.clear();
+        publish(Map.of());
     }
 
     @Override
@@ -6,17 +6,18 @@ import io.github.apace100.apoli.Apoli;
 import io.github.apace100.apoli.power.PowerTypes;
 import io.github.apace100.calio.data.IdentifiableMultiJsonDataLoader;
 import io.github.apace100.calio.data.MultiJsonDataContainer;
+import io.github.apace100.calio.data.SerializableData;
 import io.github.apace100.origins.Origins;
+import io.github.apace100.origins.util.ParallelJsonParser;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
 import net.fabricmc.fabric.api.resource.IdentifiableResourceReloadListener;
 import net.minecraft.resource.ResourceManager;
 import net.minecraft.resource.ResourceType;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.profiler.Profiler;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.Collection;
-import java.util.Set;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.*;
 
 public class OriginManager extends IdentifiableMultiJsonDataLoader implements IdentifiableResourceReloadListener {
 
@@ -26,56 +27,116 @@ public class OriginManager extends IdentifiableMultiJsonDataLoader implements Id
 		.setPrettyPrinting()
 		.create();
 
+	private ParallelJsonParser.Result<SerializableData.Instance> parsedOrigins;
+
+	private Map<Identifier, Long> fingerprints = Map.of();
+	private Map<Identifier, LoadedOrigin> loadedOrigins = Map.of();
+
 	public OriginManager() {
 		super(GSON, "origins", ResourceType.SERVER_DATA);
 		ServerLifecycleEvents.SYNC_DATA_PACK_CONTENTS.addPhaseOrdering(PowerTypes.PHASE, PHASE);
 		ServerLifecycleEvents.SYNC_DATA_PACK_CONTENTS.register(PHASE, (player, joined) -> OriginRegistry.send(player));
 	}
 
+	@Override
+	protected MultiJsonDataContainer prepare(ResourceManager manager, Profiler profiler) {
+
+		MultiJsonDataContainer prepared = super.prepare(manager, profiler);
+
+		//	Only read the data of the origins here, since resolving their powers has to wait until the powers have
+		//	been loaded in the apply stage
+		profiler.push("origins:parse");
+		parsedOrigins = ParallelJsonParser.parse(prepared, fingerprints, (id, jsonElement) -> Origin.DATA.read(jsonElement.getAsJsonObject()));
+		profiler.pop();
+
+		return prepared;
+
+	}
+
 	@Override
 	protected void apply(MultiJsonDataContainer prepared, ResourceManager manager, Profiler profiler) {
 
-		OriginRegistry.reset();
-		AtomicBoolean hasConfigChanged = new AtomicBoolean(false);
+		ParallelJsonParser.Result<SerializableData.Instance> parsed = parsedOrigins;
+		parsedOrigins = null;
+
+		Map<Identifier, LoadedOrigin> origins = new LinkedHashMap<>();
+		Map<Identifier, Long> newFingerprints = new HashMap<>(parsed.fingerprints());
+
+		origins.put(Origin.EMPTY.getIdentifier(), new LoadedOrigin(Origin.EMPTY, null));
 
-		prepared.forEach((packName, id, jsonElement) -> {
+		boolean hasConfigChanged = false;
+		int unchangedOrigins = 0;
 
-			try {
+		for (ParallelJsonParser.Entry<SerializableData.Instance> entry : parsed.entries()) {
 
-				Origin origin = Origin.fromJson(id, jsonElement.getAsJsonObject());
-				int loadingPriority = origin.getLoadingPriority();
+			String packName = entry.packName();
+			Identifier id = entry.id();
 
-				if (!OriginRegistry.contains(id)) {
-					OriginRegistry.register(id, origin);
-				} else if (OriginRegistry.get(id).getLoadingPriority() < loadingPriority) {
-					Origins.LOGGER.warn("Overriding origin \"{}\" (with prev. loading priority of {}) with a higher loading priority of {} from data pack [{}]!", id, OriginRegistry.get(id).getLoadingPriority(), loadingPriority, packName);
-					OriginRegistry.update(id, origin);
+			if (!parsed.changedIds().contains(id)) {
+
+				//	The files of this origin did not change since the last reload, so re-use the data that was parsed from
+				//	them back then
+				LoadedOrigin prevLoadedOrigin = loadedOrigins.get(id);
+				if (prevLoadedOrigin != null && !origins.containsKey(id)) {
+					origins.put(id, prevLoadedOrigin.rebind(id));
+					unchangedOrigins++;
+				}
+
+			} else {
+
+				try {
+
+					if (entry.error() != null) {
+						throw entry.error();
+					}
+
+					Origin origin = Origin.createFromData(id, entry.result());
+					int loadingPriority = origin.getLoadingPriority();
+
+					LoadedOrigin prevLoadedOrigin = origins.get(id);
+					if (prevLoadedOrigin == null) {
+						origins.put(id, new LoadedOrigin(origin, entry.result()));
+					} else if (prevLoadedOrigin.origin().getLoadingPriority() < loadingPriority) {
+						Origins.LOGGER.warn("Overriding origin \"{}\" (with prev. loading priority of {}) with a higher loading priority of {} from data pack [{}]!", id, prevLoadedOrigin.origin().getLoadingPriority(), loadingPriority, packName);
+						origins.remove(id);
+						origins.put(id, new LoadedOrigin(origin, entry.result()));
+					}
+
+				} catch (Exception e) {
+					Origins.LOGGER.error("There was a problem reading origin file \"{}\" (skipping): {}", id, e.getMessage());
+					newFingerprints.remove(id);
 				}
 
-			} catch (Exception e) {
-				Origins.LOGGER.error("There was a problem reading origin file \"{}\" (skipping): {}", id, e.getMessage());
 			}
 
-			if (!OriginRegistry.contains(id)) {
-				return;
+			LoadedOrigin loadedOrigin = origins.get(id);
+			if (loadedOrigin == null) {
+				continue;
 			}
 
-			Origin origin = OriginRegistry.get(id);
-			hasConfigChanged.set(hasConfigChanged.get() | Origins.config.addToConfig(origin));
+			Origin origin = loadedOrigin.origin();
+			hasConfigChanged |= Origins.config.addToConfig(origin);
 
 			if (Origins.config.isOriginDisabled(id)) {
-				OriginRegistry.remove(id);
-				return;
+				origins.remove(id);
+				newFingerprints.remove(id);
+				continue;
 			}
 
-			origin
-				.getPowerTypes()
-				.removeIf(pt -> Origins.config.isPowerDisabled(id, pt.getIdentifier()));
+			origin.removePowerTypesIf(pt -> Origins.config.isPowerDisabled(id, pt.getIdentifier()));
+
+		}
 
-		});
+		Map<Identifier, Origin> registry = new LinkedHashMap<>();
+		origins.forEach((id, loadedOrigin) -> registry.put(id, loadedOrigin.origin()));
 
-		Origins.LOGGER.info("Finished loading origins from data files. Registry contains {} origins.", OriginRegistry.size());
-		if (hasConfigChanged.get()) {
+		fingerprints = newFingerprints;
+		loadedOrigins = origins;
+
+		OriginRegistry.publish(registry);
+
+		Origins.LOGGER.info("Finished loading origins from data files. Registry contains {} origins ({} unchanged since the last reload).", registry.size(), unchangedOrigins);
+		if (hasConfigChanged) {
 			Origins.serializeConfig();
 		}
 
@@ -91,4 +152,19 @@ public class OriginManager extends IdentifiableMultiJsonDataLoader implements Id
 		return Set.of(Apoli.identifier("powers"));
 	}
 
+	private record LoadedOrigin(Origin origin, @Nullable SerializableData.Instance data) {
+
+		/**
+		 *	Re-creates the origin from its data, since the powers are re-created on every reload. The origin that was
+		 *	published by the previous reload is never changed, since it may still be used by readers of the previous
+		 *	snapshot of the registry.
+		 */
+		private LoadedOrigin rebind(Identifier id) {
+			return data != null
+				? new LoadedOrigin(Origin.createFromData(id, data), data)
+				: this;
+		}
+
+	}
+
 }
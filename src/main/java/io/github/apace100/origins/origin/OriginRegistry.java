@@ -1,19 +1,45 @@
 package io.github.apace100.origins.origin;
 
 import io.github.apace100.calio.data.SerializableData;
+import io.github.apace100.origins.networking.CachedPacket;
 import io.github.apace100.origins.networking.packet.s2c.SyncOriginRegistryS2CPacket;
-import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.util.Identifier;
 
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class OriginRegistry {
 
-    private static final Map<Identifier, Origin> idToOrigin = new HashMap<>();
+    private static final AtomicReference<RegistrySnapshot<Origin>> SNAPSHOT = new AtomicReference<>(RegistrySnapshot.empty());
+    private static final CachedPacket SYNC_PACKET = CachedPacket.of(SyncOriginRegistryS2CPacket.TYPE, OriginRegistry::getGeneration, OriginRegistry::createSyncPacket);
+
+    /**
+     *  @return the current contents of the registry. The returned snapshot never changes, even if the registry is
+     *          reloaded while it is being used.
+     */
+    public static RegistrySnapshot<Origin> snapshot() {
+        return SNAPSHOT.get();
+    }
+
+    public static long getGeneration() {
+        return SNAPSHOT.get().generation();
+    }
+
+    /**
+     *  @return the combined hash of the current layer and origin palettes (see {@link IdPalette#hash(IdPalette, IdPalette)})
+     */
+    public static int getPaletteHash() {
+        return IdPalette.hash(OriginLayers.snapshot().palette(), SNAPSHOT.get().palette());
+    }
+
+    /**
+     *  Replaces the contents of the registry with the specified origins in a single step, so that readers either see the
+     *  old or the new origins, but never a mix of both.
+     */
+    public static void publish(Map<Identifier, Origin> origins) {
+        SNAPSHOT.updateAndGet(snapshot -> snapshot.next(origins));
+    }
 
     public static Origin register(Origin origin) {
         return register(origin.getIdentifier(), origin);
@@ -21,48 +47,69 @@ public class OriginRegistry {
 
     public static Origin register(Identifier id, Origin origin) {
 
-        if (idToOrigin.containsKey(id)) {
-            throw new IllegalArgumentException("Duplicate origin id tried to register: '" + id.toString() + "'");
-        }
+        SNAPSHOT.updateAndGet(snapshot -> {
+
+            if (snapshot.contains(id)) {
+                throw new IllegalArgumentException("Duplicate origin id tried to register: '" + id.toString() + "'");
+            }
+
+            Map<Identifier, Origin> origins = new LinkedHashMap<>(snapshot.entries());
+            origins.put(id, origin);
+
+            return snapshot.next(origins);
+
+        });
 
-        idToOrigin.put(id, origin);
         return origin;
 
     }
 
     protected static Origin update(Identifier id, Origin origin) {
-        idToOrigin.remove(id);
-        return register(id, origin);
+
+        SNAPSHOT.updateAndGet(snapshot -> {
+
+            Map<Identifier, Origin> origins = new LinkedHashMap<>(snapshot.entries());
+
+            origins.remove(id);
+            origins.put(id, origin);
+
+            return snapshot.next(origins);
+
+        });
+
+        return origin;
+
     }
 
     public static int size() {
-        return idToOrigin.size();
+        return snapshot().size();
     }
 
     public static Set<Identifier> keys() {
-        return idToOrigin.keySet();
+        return snapshot().keys();
     }
 
     public static Set<Map.Entry<Identifier, Origin>> entries() {
-        return idToOrigin.entrySet();
+        return snapshot().entries().entrySet();
     }
 
     public static Collection<Origin> values() {
-        return idToOrigin.values();
+        return snapshot().values();
     }
 
     public static Origin get(Identifier id) {
 
-        if (!idToOrigin.containsKey(id)) {
+        Origin origin = snapshot().get(id);
+        if (origin == null) {
             throw new IllegalArgumentException("Could not get origin from id '" + id.toString() + "', as it was not registered!");
         }
 
-        return idToOrigin.get(id);
+        return origin;
 
     }
 
     public static boolean contains(Identifier id) {
-        return idToOrigin.containsKey(id);
+        return snapshot().contains(id);
     }
 
     public static boolean contains(Origin origin) {
@@ -70,24 +117,40 @@ public class OriginRegistry {
     }
 
     public static void clear() {
-        idToOrigin.clear();
+        publish(Map.of());
     }
 
     public static void reset() {
-        clear();
-        register(Origin.EMPTY);
+        publish(Map.of(Origin.EMPTY.getIdentifier(), Origin.EMPTY));
     }
 
     public static void remove(Identifier id) {
-        idToOrigin.remove(id);
+
+        SNAPSHOT.updateAndGet(snapshot -> {
+
+            Map<Identifier, Origin> origins = new LinkedHashMap<>(snapshot.entries());
+            origins.remove(id);
+
+            return snapshot.next(origins);
+
+        });
+
     }
 
+    /**
+     *  Sends the contents of the registry to the specified player. The packet is only encoded once per generation of the
+     *  registry, no matter how many players it is sent to.
+     */
     public static void send(ServerPlayerEntity player) {
+        SYNC_PACKET.send(player);
+    }
+
+    private static SyncOriginRegistryS2CPacket createSyncPacket() {
 
-        Map<Identifier, SerializableData.Instance> origins = new HashMap<>();
-        idToOrigin.forEach((id, origin) -> origins.put(id, origin.toData()));
+        Map<Identifier, SerializableData.Instance> origins = new LinkedHashMap<>();
+        snapshot().entries().forEach((id, origin) -> origins.put(id, origin.toData()));
 
-        ServerPlayNetworking.send(player, new SyncOriginRegistryS2CPacket(origins));
+        return new SyncOriginRegistryS2CPacket(origins);
 
     }
 
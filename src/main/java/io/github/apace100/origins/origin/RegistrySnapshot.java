@@ -0,0 +1,55 @@
+package io.github.apace100.origins.origin;
+
+import com.google.common.collect.ImmutableMap;
+import net.minecraft.util.Identifier;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ *  An immutable view of the contents of a registry at a specific point in time. Snapshots are never modified after
+ *  they are published; a registry replaces its whole snapshot instead, and increments the generation when it does so.
+ *  This means that callers can hold on to a snapshot without any locking, and caches can check whether they are stale
+ *  by comparing their generation with the one of the current snapshot.
+ *
+ *  @param generation   the generation of the snapshot, which increases every time the registry is changed
+ *  @param entries      the entries of the registry
+ *  @param palette      the raw IDs of the entries, in the order of the entries
+ */
+public record RegistrySnapshot<T>(long generation, ImmutableMap<Identifier, T> entries, IdPalette palette) {
+
+    public static <T> RegistrySnapshot<T> empty() {
+        return new RegistrySnapshot<>(0, ImmutableMap.of(), IdPalette.EMPTY);
+    }
+
+    public RegistrySnapshot<T> next(Map<Identifier, T> entries) {
+
+        ImmutableMap<Identifier, T> copiedEntries = ImmutableMap.copyOf(entries);
+        return new RegistrySnapshot<>(generation + 1, copiedEntries, IdPalette.of(copiedEntries.keySet()));
+
+    }
+
+    @Nullable
+    public T get(Identifier id) {
+        return entries.get(id);
+    }
+
+    public boolean contains(Identifier id) {
+        return entries.containsKey(id);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public Set<Identifier> keys() {
+        return entries.keySet();
+    }
+
+    public Collection<T> values() {
+        return entries.values();
+    }
+
+}
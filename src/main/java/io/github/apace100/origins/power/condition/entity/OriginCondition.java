@@ -25,10 +25,19 @@ public class OriginCondition {
         Identifier layerId = data.get("layer");
 
         if (layerId == null) {
-            return originComponent.getOrigins().values()
-                .stream()
-                .map(Origin::getIdentifier)
-                .anyMatch(originId::equals);
+
+            int layerCount = OriginLayers.size();
+            for (int rawId = 0; rawId < layerCount; rawId++) {
+
+                Origin origin = originComponent.originAt(rawId);
+                if (origin != null && origin.getIdentifier().equals(originId)) {
+                    return true;
+                }
+
+            }
+
+            return false;
+
         }
 
         OriginLayer layer = OriginLayers.getNullableLayer(layerId);
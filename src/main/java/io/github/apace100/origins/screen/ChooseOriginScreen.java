@@ -1,8 +1,7 @@
 package io.github.apace100.origins.screen;
 
 import io.github.apace100.origins.Origins;
-import io.github.apace100.origins.networking.packet.c2s.ChooseOriginC2SPacket;
-import io.github.apace100.origins.networking.packet.c2s.ChooseRandomOriginC2SPacket;
+import io.github.apace100.origins.networking.packet.c2s.ChooseOriginsC2SPacket;
 import io.github.apace100.origins.origin.*;
 import io.github.apace100.origins.registry.ModItems;
 import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
@@ -14,16 +13,15 @@ import net.minecraft.item.ItemStack;
 import net.minecraft.item.Items;
 import net.minecraft.text.MutableText;
 import net.minecraft.text.Text;
-import net.minecraft.util.Identifier;
 
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
 
 public class ChooseOriginScreen extends OriginDisplayScreen {
 
-	private final ArrayList<OriginLayer> layerList;
+	private final List<LayerOptions> layerList;
 	private final List<Origin> originSelection;
+	private final List<ChooseOriginsC2SPacket.Choice> choices;
 
 	private final int currentLayerIndex;
 
@@ -32,26 +30,34 @@ public class ChooseOriginScreen extends OriginDisplayScreen {
 	private int currentOriginIndex = 0;
 	private int maxSelection = 0;
 
-	
-	public ChooseOriginScreen(ArrayList<OriginLayer> layerList, int currentLayerIndex, boolean showDirtBackground) {
+	private boolean finished;
+
+	/**
+	 *	@param layerList	the options of the layers to choose an origin in, as computed by the server
+	 */
+	public ChooseOriginScreen(List<LayerOptions> layerList, int currentLayerIndex, boolean showDirtBackground) {
+		this(layerList, currentLayerIndex, showDirtBackground, new ArrayList<>());
+	}
+
+	/**
+	 *	@param choices	the choices that were made in the previous layers, which are sent to the server together once
+	 *					the choice of the last layer (or the last layer before a layer with conditions) was made
+	 */
+	private ChooseOriginScreen(List<LayerOptions> layerList, int currentLayerIndex, boolean showDirtBackground, List<ChooseOriginsC2SPacket.Choice> choices) {
 		super(Text.translatable(Origins.MODID + ".screen.choose_origin"), showDirtBackground);
 
 		this.layerList = layerList;
 		this.currentLayerIndex = currentLayerIndex;
 		this.originSelection = new ArrayList<>(layerList.size());
+		this.choices = choices;
 
 		PlayerEntity player = MinecraftClient.getInstance().player;
 		if (player == null) {
 			return;
 		}
 
-		OriginLayer currentLayer = getCurrentLayer();
-		currentLayer.getOrigins(player).forEach(originId -> {
-
-			Origin origin = OriginRegistry.get(originId);
-			if (!origin.isChoosable()) {
-				return;
-			}
+		LayerOptions currentOptions = layerList.get(currentLayerIndex);
+		for (Origin origin : currentOptions.origins()) {
 
 			ItemStack iconStack = origin.getDisplayItem();
 			if (iconStack.isOf(Items.PLAYER_HEAD) && (!iconStack.hasNbt() || !iconStack.getOrCreateNbt().contains("SkullOwner"))) {
@@ -60,10 +66,9 @@ public class ChooseOriginScreen extends OriginDisplayScreen {
 
 			originSelection.add(origin);
 
-		});
+		}
 
-		originSelection.sort(Comparator.comparingInt((Origin o) -> o.getImpact().getImpactValue()).thenComparingInt(Origin::getOrder));
-		maxSelection = currentLayer.getOriginOptionCount(player);
+		maxSelection = currentOptions.optionCount();
 
 		if (maxSelection == 0) {
 			openNextLayerScreen();
@@ -74,8 +79,62 @@ public class ChooseOriginScreen extends OriginDisplayScreen {
 
 	}
 
+	/**
+	 *	Opens the screen of the first layer that has origins to choose from, or closes the current screen if there is none.
+	 */
+	public static void openFirst(List<LayerOptions> layerList, boolean showDirtBackground) {
+
+		MinecraftClient client = MinecraftClient.getInstance();
+		for (int index = 0; index < layerList.size(); index++) {
+
+			if (layerList.get(index).optionCount() > 0) {
+				client.setScreen(new ChooseOriginScreen(layerList, index, showDirtBackground));
+				return;
+			}
+
+		}
+
+		client.setScreen(null);
+
+	}
+
+	/**
+	 *	Opens the screen of the next layer that has origins to choose from. If this was the last one, or if the next
+	 *	layer has conditions, the choices made so far are sent to the server, and the screen waits for the server to
+	 *	confirm them. The conditions of a layer can depend on the origins chosen in the previous layers, so the server
+	 *	sends the options of the remaining layers again once it applied the choices.
+	 */
 	private void openNextLayerScreen() {
-		MinecraftClient.getInstance().setScreen(new WaitForNextLayerScreen(layerList, currentLayerIndex, this.showDirtBackground));
+
+		if (finished) {
+			return;
+		}
+
+		MinecraftClient client = MinecraftClient.getInstance();
+		finished = true;
+
+		for (int index = currentLayerIndex + 1; index < layerList.size(); index++) {
+
+			LayerOptions nextOptions = layerList.get(index);
+			if (!choices.isEmpty() && nextOptions.layer().getIndex().isConditioned()) {
+				break;
+			}
+
+			if (nextOptions.optionCount() > 0) {
+				client.setScreen(new ChooseOriginScreen(layerList, index, this.showDirtBackground, choices));
+				return;
+			}
+
+		}
+
+		if (choices.isEmpty()) {
+			client.setScreen(null);
+			return;
+		}
+
+		ClientPlayNetworking.send(ChooseOriginsC2SPacket.of(choices));
+		client.setScreen(new WaitForNextLayerScreen(this.showDirtBackground));
+
 	}
 
 	@Override
@@ -96,14 +155,8 @@ public class ChooseOriginScreen extends OriginDisplayScreen {
 			Text.translatable(Origins.MODID + ".gui.select"),
 			button -> {
 
-				Identifier originId = super.getCurrentOrigin().getIdentifier();
-				Identifier layerId = getCurrentLayer().getIdentifier();
-
-				if (currentOriginIndex == originSelection.size()) {
-					ClientPlayNetworking.send(new ChooseRandomOriginC2SPacket(layerId));
-				} else {
-					ClientPlayNetworking.send(new ChooseOriginC2SPacket(layerId, originId));
-				}
+				Origin chosenOrigin = currentOriginIndex == originSelection.size() ? null : getCurrentOrigin();
+				choices.add(ChooseOriginsC2SPacket.Choice.of(getCurrentLayer(), chosenOrigin));
 
 				openNextLayerScreen();
 
@@ -144,7 +197,7 @@ public class ChooseOriginScreen extends OriginDisplayScreen {
 
 	@Override
 	public OriginLayer getCurrentLayer() {
-		return layerList.get(currentLayerIndex);
+		return layerList.get(currentLayerIndex).layer();
 	}
 
 	@Override
@@ -181,20 +234,8 @@ public class ChooseOriginScreen extends OriginDisplayScreen {
 		this.randomOrigin = new Origin(Origins.identifier("random"), new ItemStack(ModItems.ORB_OF_ORIGIN), Impact.NONE, -1, Integer.MAX_VALUE);
 
 		MutableText randomOriginText = Text.of("").copy();
-		List<Identifier> randoms = layerList.get(currentLayerIndex).getRandomOrigins(MinecraftClient.getInstance().player);
-
-		randoms.sort((ia, ib) -> {
-
-			Origin a = OriginRegistry.get(ia);
-			Origin b = OriginRegistry.get(ib);
-
-			int impactDelta = Integer.compare(a.getImpact().getImpactValue(), b.getImpact().getImpactValue());
-			return impactDelta != 0 ? impactDelta : Integer.compare(a.getOrder(), b.getOrder());
-
-		});
-
-		for(Identifier id : randoms) {
-			randomOriginText.append(OriginRegistry.get(id).getName());
+		for (Origin origin : layerList.get(currentLayerIndex).randomOrigins()) {
+			randomOriginText.append(origin.getName());
 			randomOriginText.append(Text.of("\n"));
 		}
 
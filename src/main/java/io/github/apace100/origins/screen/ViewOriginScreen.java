@@ -1,10 +1,11 @@
 package io.github.apace100.origins.screen;
 
-import com.google.common.collect.Lists;
 import io.github.apace100.origins.Origins;
 import io.github.apace100.origins.OriginsClient;
+import io.github.apace100.origins.origin.LayerOptions;
 import io.github.apace100.origins.origin.Origin;
 import io.github.apace100.origins.origin.OriginLayer;
+import io.github.apace100.origins.origin.OriginLayers;
 import io.github.apace100.origins.registry.ModComponents;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.gui.DrawContext;
@@ -17,7 +18,7 @@ import net.minecraft.util.Pair;
 
 import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.Map;
+import java.util.List;
 
 public class ViewOriginScreen extends OriginDisplayScreen {
 
@@ -35,10 +36,8 @@ public class ViewOriginScreen extends OriginDisplayScreen {
 			return;
 		}
 
-		Map<OriginLayer, Origin> origins = ModComponents.ORIGIN.get(player).getOrigins();
-		originLayers = new ArrayList<>(origins.size());
-
-		origins.forEach((layer, origin) -> {
+		originLayers = new ArrayList<>(OriginLayers.size());
+		ModComponents.ORIGIN.get(player).forEachOrigin((layer, origin) -> {
 
 			ItemStack iconStack = origin.getDisplayItem();
 			if (iconStack.isOf(Items.PLAYER_HEAD) && (!iconStack.hasNbt() || !iconStack.getOrCreateNbt().contains("SkullOwner"))) {
@@ -83,7 +82,7 @@ public class ViewOriginScreen extends OriginDisplayScreen {
 
 		addDrawableChild(chooseOriginButton = ButtonWidget.builder(
 			Text.translatable(Origins.MODID + ".gui.choose"),
-			button -> client.setScreen(new ChooseOriginScreen(Lists.newArrayList(getCurrentLayer()), 0, false))
+			button -> client.setScreen(new ChooseOriginScreen(List.of(LayerOptions.compute(getCurrentLayer(), client.player)), 0, false))
 		).dimensions(guiLeft + WINDOW_WIDTH / 2 - 50, guiTop + WINDOW_HEIGHT - 40, 100, 20).build());
 
 		PlayerEntity player = client.player;
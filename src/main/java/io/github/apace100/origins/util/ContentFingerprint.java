@@ -0,0 +1,35 @@
+package io.github.apace100.origins.util;
+
+import com.google.common.hash.Hashing;
+import io.github.apace100.calio.data.SerializableData;
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.util.Identifier;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ *  Computes a 64-bit fingerprint of the serialized data of an origin or origin layer. Two definitions with the same
+ *  ID and the same data always have the same fingerprint, so it can be used to cheaply tell whether a definition
+ *  changed (e.g: after a reload) without having to serialize and compare both of them.
+ */
+public final class ContentFingerprint {
+
+    public static long of(@Nullable Identifier id, SerializableData data, SerializableData.Instance instance) {
+
+        PacketByteBuf buffer = new PacketByteBuf(Unpooled.buffer());
+        try {
+
+            buffer.writeString(String.valueOf(id));
+            data.write(buffer, instance);
+
+            return Hashing.farmHashFingerprint64()
+                .hashBytes(buffer.array(), buffer.arrayOffset() + buffer.readerIndex(), buffer.readableBytes())
+                .asLong();
+
+        } finally {
+            buffer.release();
+        }
+
+    }
+
+}
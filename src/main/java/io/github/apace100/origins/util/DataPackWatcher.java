@@ -0,0 +1,164 @@
+package io.github.apace100.origins.util;
+
+import io.github.apace100.origins.Origins;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.WorldSavePath;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ *  A development aid that reloads the data packs of the server whenever a file in the data packs folder of the world
+ *  changes. Together with the incremental reloading of origins and layers, this means that editing a single origin file
+ *  is picked up almost immediately. Only enabled if {@link Origins.ServerConfig#watchDataPacks} is set.
+ */
+public final class DataPackWatcher implements Runnable {
+
+    private static final long DEBOUNCE_MILLIS = 500;
+
+    @Nullable
+    private static DataPackWatcher instance;
+
+    private final MinecraftServer server;
+    private final Path root;
+    private final WatchService watchService;
+
+    private volatile boolean running = true;
+
+    private DataPackWatcher(MinecraftServer server, Path root) throws IOException {
+        this.server = server;
+        this.root = root;
+        this.watchService = root.getFileSystem().newWatchService();
+    }
+
+    public static void register() {
+        ServerLifecycleEvents.SERVER_STARTED.register(DataPackWatcher::start);
+        ServerLifecycleEvents.SERVER_STOPPING.register(server -> stop());
+    }
+
+    private static void start(MinecraftServer server) {
+
+        if (!Origins.config.watchDataPacks || instance != null) {
+            return;
+        }
+
+        Path root = server.getSavePath(WorldSavePath.DATAPACKS);
+        try {
+
+            Files.createDirectories(root);
+
+            instance = new DataPackWatcher(server, root);
+            instance.registerAll(root);
+
+            Thread thread = new Thread(instance, "Origins Data Pack Watcher");
+            thread.setDaemon(true);
+            thread.start();
+
+            Origins.LOGGER.info("Watching data packs in \"{}\" for changes.", root);
+
+        } catch (IOException e) {
+            Origins.LOGGER.error("Could not watch data packs in \"{}\" for changes: {}", root, e.getMessage());
+            instance = null;
+        }
+
+    }
+
+    private static void stop() {
+
+        if (instance == null) {
+            return;
+        }
+
+        instance.running = false;
+        try {
+            instance.watchService.close();
+        } catch (IOException ignored) {
+
+        }
+
+        instance = null;
+
+    }
+
+    private void registerAll(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.filter(Files::isDirectory).toList()) {
+                path.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+
+            while (running) {
+
+                WatchKey key = watchService.take();
+                boolean changed = false;
+
+                //  Editors usually touch a file several times when saving it, so wait until the data packs have been
+                //  left alone for a moment before reloading them
+                while (key != null) {
+
+                    changed |= processEvents(key);
+                    key = watchService.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+
+                }
+
+                if (changed && running) {
+                    server.execute(this::reload);
+                }
+
+            }
+
+        } catch (InterruptedException | ClosedWatchServiceException ignored) {
+
+        }
+    }
+
+    private boolean processEvents(WatchKey key) {
+
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                changed = true;
+                continue;
+            }
+
+            if (!(key.watchable() instanceof Path directory) || !(event.context() instanceof Path fileName)) {
+                continue;
+            }
+
+            Path path = directory.resolve(fileName);
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+                try {
+                    registerAll(path);
+                } catch (IOException e) {
+                    Origins.LOGGER.warn("Could not watch \"{}\" for changes: {}", root.relativize(path), e.getMessage());
+                }
+            }
+
+            changed = true;
+
+        }
+
+        key.reset();
+        return changed;
+
+    }
+
+    private void reload() {
+        Origins.LOGGER.info("Data packs in \"{}\" have changed. Reloading...", root);
+        server.reloadResources(server.getDataPackManager().getEnabledNames()).exceptionally(throwable -> {
+            Origins.LOGGER.warn("Failed to reload data packs after a change: {}", throwable.getMessage());
+            return null;
+        });
+    }
+
+}
@@ -2,6 +2,9 @@ package io.github.apace100.origins.util;
 
 import io.github.apace100.apoli.power.PowerTypeRegistry;
 import io.github.apace100.origins.Origins;
+import io.github.apace100.origins.component.LayerConditionCache;
+import io.github.apace100.origins.component.OriginSyncScheduler;
+import io.github.apace100.origins.networking.ChoosePacketValidator;
 import io.github.apace100.origins.origin.OriginLayers;
 import io.github.apace100.origins.origin.OriginRegistry;
 
@@ -15,6 +18,28 @@ public class DebugInfo {
             "Powers:  " + PowerTypeRegistry.size()
         });
     }
+    public static void printConditionCacheStats() {
+        printInfo(new String[] {
+            "Layer Condition Cache",
+            "Hits:     " + LayerConditionCache.getHits(),
+            "Misses:   " + LayerConditionCache.getMisses(),
+            "Hit rate: " + String.format("%.1f%%", LayerConditionCache.getHitRate() * 100)
+        });
+    }
+    public static void printSyncStats() {
+        printInfo(new String[] {
+            "Origin Component Syncs",
+            "Avoided: " + OriginSyncScheduler.getAvoidedSyncs()
+        });
+    }
+    public static void printChoosePacketStats() {
+        printInfo(new String[] {
+            "Dropped Choose Packets",
+            "Invalid:      " + ChoosePacketValidator.getInvalidPackets(),
+            "Rate limited: " + ChoosePacketValidator.getRateLimitedPackets()
+        });
+    }
+
     private static void printInfo(String[] lines) {
         int longest = 0;
         for(int i = 0; i < lines.length; i++) {
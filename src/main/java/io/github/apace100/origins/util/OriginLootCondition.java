@@ -5,6 +5,7 @@ import com.mojang.serialization.codecs.RecordCodecBuilder;
 import io.github.apace100.origins.component.OriginComponent;
 import io.github.apace100.origins.origin.Origin;
 import io.github.apace100.origins.origin.OriginLayer;
+import io.github.apace100.origins.origin.OriginLayers;
 import io.github.apace100.origins.registry.ModComponents;
 import net.minecraft.loot.condition.LootCondition;
 import net.minecraft.loot.condition.LootConditionType;
@@ -12,7 +13,6 @@ import net.minecraft.loot.context.LootContext;
 import net.minecraft.loot.context.LootContextParameters;
 import net.minecraft.util.Identifier;
 
-import java.util.Map;
 import java.util.Optional;
 
 @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
@@ -46,12 +46,21 @@ public class OriginLootCondition implements LootCondition {
             return false;
         }
 
-        for (Map.Entry<OriginLayer, Origin> entry : component.getOrigins().entrySet()) {
+        if (layer.isPresent()) {
 
-            Identifier layerId = entry.getKey().getIdentifier();
-            Identifier originId = entry.getValue().getIdentifier();
+            OriginLayer originLayer = OriginLayers.getNullableLayer(layer.get());
+            Origin layerOrigin = originLayer != null ? component.getOrigin(originLayer) : null;
 
-            if (layer.map(layerId::equals).orElse(true) && originId.equals(origin)) {
+            return layerOrigin != null
+                && layerOrigin.getIdentifier().equals(origin);
+
+        }
+
+        int layerCount = OriginLayers.size();
+        for (int rawId = 0; rawId < layerCount; rawId++) {
+
+            Origin layerOrigin = component.originAt(rawId);
+            if (layerOrigin != null && layerOrigin.getIdentifier().equals(origin)) {
                 return true;
             }
 
@@ -0,0 +1,240 @@
+package io.github.apace100.origins.util;
+
+import com.google.common.hash.Hashing;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import io.github.apace100.calio.data.MultiJsonDataContainer;
+import io.github.apace100.calio.data.SerializableData;
+import net.minecraft.util.Identifier;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+/**
+ *  Parses the entries of a {@link MultiJsonDataContainer} on a fork-join pool. The returned entries keep the order in
+ *  which the container yields them (data pack order, then file order), so a sequential pass over the results behaves
+ *  exactly like a sequential pass over the container itself.<br>
+ *  <br>
+ *  To support incremental reloads, every entry is hashed first and the hashes of all entries of an ID are combined
+ *  into a fingerprint of that ID. Only the entries of the IDs whose fingerprint differs from the previous one are
+ *  parsed; the caller is expected to keep whatever it built from the other IDs the last time.
+ */
+public final class ParallelJsonParser {
+
+    private static final int SEQUENTIAL_THRESHOLD = 8;
+
+    /**
+     *  Files that contain a wildcard are parsed with {@link SerializableData#CURRENT_NAMESPACE} and
+     *  {@link SerializableData#CURRENT_PATH} set to their ID, which Calio resolves the wildcards against.
+     *
+     *  @param container            the prepared data to parse
+     *  @param previousFingerprints the fingerprints of the IDs from the last time the data was parsed
+     *  @param parser               the function that turns a single JSON file into a result
+     *  @return                     the entries (of which only those of changed IDs are parsed), the fingerprints of all
+     *                              IDs and the IDs that were added, changed or removed
+     */
+    public static <T> Result<T> parse(MultiJsonDataContainer container, Map<Identifier, Long> previousFingerprints, Parser<T> parser) {
+
+        List<Entry<T>> entries = new ArrayList<>();
+        container.forEach((packName, id, jsonElement) -> entries.add(new Entry<>(packName, id, jsonElement)));
+
+        new ForEachTask<>(entries, 0, entries.size(), Entry::computeHash).invoke();
+
+        Map<Identifier, Long> fingerprints = new LinkedHashMap<>();
+        for (Entry<T> entry : entries) {
+            fingerprints.merge(entry.id, entry.hash, (prevHash, hash) -> prevHash * 31 + hash);
+        }
+
+        Set<Identifier> changedIds = new HashSet<>();
+        fingerprints.forEach((id, fingerprint) -> {
+            if (!fingerprint.equals(previousFingerprints.get(id))) {
+                changedIds.add(id);
+            }
+        });
+
+        previousFingerprints.keySet()
+            .stream()
+            .filter(id -> !fingerprints.containsKey(id))
+            .forEach(changedIds::add);
+
+        List<Entry<T>> changedEntries = entries
+            .stream()
+            .filter(entry -> changedIds.contains(entry.id))
+            .toList();
+
+        new ForEachTask<>(changedEntries, 0, changedEntries.size(), entry -> parse(entry, parser)).invoke();
+        return new Result<>(entries, fingerprints, changedIds);
+
+    }
+
+    private static <T> void parse(Entry<T> entry, Parser<T> parser) {
+
+        try {
+
+            //  The parse context of Calio is global (and shared by every data loader that parses files at the same
+            //  time), so only the files that actually depend on it (by using a wildcard in an identifier) are parsed one
+            //  at a time. Every other file is parsed without touching it.
+            if (!containsWildcard(entry.json)) {
+                entry.result = parser.parse(entry.id, entry.json);
+                return;
+            }
+
+            synchronized (SerializableData.class) {
+
+                SerializableData.CURRENT_NAMESPACE = entry.id.getNamespace();
+                SerializableData.CURRENT_PATH = entry.id.getPath();
+
+                try {
+                    entry.result = parser.parse(entry.id, entry.json);
+                } finally {
+                    SerializableData.CURRENT_NAMESPACE = null;
+                    SerializableData.CURRENT_PATH = null;
+                }
+
+            }
+
+        } catch (Exception e) {
+            entry.error = e;
+        }
+
+    }
+
+    private static boolean containsWildcard(JsonElement jsonElement) {
+
+        if (jsonElement instanceof JsonPrimitive jsonPrimitive) {
+            return jsonPrimitive.isString() && jsonPrimitive.getAsString().indexOf('*') >= 0;
+        }
+
+        if (jsonElement instanceof JsonArray jsonArray) {
+
+            for (JsonElement element : jsonArray) {
+                if (containsWildcard(element)) {
+                    return true;
+                }
+            }
+
+        } else if (jsonElement instanceof JsonObject jsonObject) {
+
+            for (Map.Entry<String, JsonElement> element : jsonObject.entrySet()) {
+                if (containsWildcard(element.getValue())) {
+                    return true;
+                }
+            }
+
+        }
+
+        return false;
+
+    }
+
+    /**
+     *  @param entries      all entries of the container, in order
+     *  @param fingerprints the fingerprint of every ID of the container
+     *  @param changedIds   the IDs that were added, changed or removed since the previous fingerprints were taken
+     */
+    public record Result<T>(List<Entry<T>> entries, Map<Identifier, Long> fingerprints, Set<Identifier> changedIds) {
+
+    }
+
+    @FunctionalInterface
+    public interface Parser<T> {
+        T parse(Identifier id, JsonElement jsonElement) throws Exception;
+    }
+
+    public static final class Entry<T> {
+
+        private final String packName;
+        private final Identifier id;
+        private final JsonElement json;
+
+        private long hash;
+
+        private T result;
+        private Exception error;
+
+        private Entry(String packName, Identifier id, JsonElement json) {
+            this.packName = packName;
+            this.id = id;
+            this.json = json;
+        }
+
+        public String packName() {
+            return packName;
+        }
+
+        public Identifier id() {
+            return id;
+        }
+
+        public JsonElement json() {
+            return json;
+        }
+
+        public long hash() {
+            return hash;
+        }
+
+        private void computeHash() {
+            this.hash = Hashing.farmHashFingerprint64()
+                .newHasher()
+                .putUnencodedChars(packName)
+                .putUnencodedChars(json.toString())
+                .hash()
+                .asLong();
+        }
+
+        @Nullable
+        public T result() {
+            return result;
+        }
+
+        @Nullable
+        public Exception error() {
+            return error;
+        }
+
+    }
+
+    private static final class ForEachTask<T> extends RecursiveAction {
+
+        private final List<Entry<T>> entries;
+        private final int from;
+        private final int to;
+
+        private final Consumer<Entry<T>> action;
+
+        private ForEachTask(List<Entry<T>> entries, int from, int to, Consumer<Entry<T>> action) {
+            this.entries = entries;
+            this.from = from;
+            this.to = to;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+
+            if (to - from <= SEQUENTIAL_THRESHOLD) {
+
+                for (int i = from; i < to; i++) {
+                    action.accept(entries.get(i));
+                }
+
+                return;
+
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(
+                new ForEachTask<>(entries, from, middle, action),
+                new ForEachTask<>(entries, middle, to, action)
+            );
+
+        }
+
+    }
+
+}
@@ -0,0 +1,186 @@
+package io.github.apace100.origins.component;
+
+import io.github.apace100.origins.Origins;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.nbt.NbtList;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ *  Compares the legacy {@code OriginLayers} encoding of the origin component with the compact encoding of
+ *  {@link CompactOriginsNbt}, by writing the same synthetic origin components in both formats to player data files with
+ *  {@link NbtIo#writeCompressed(NbtCompound, File)}, and reporting the total size of the files and the time it took to
+ *  encode and write them. The files only contain the origin component, so the sizes are the part of a real player data
+ *  file that the format accounts for.<br>
+ *  <br>
+ *  Lives in the test sources, so it isn't part of the mod jar, and doesn't need a running server. Usage:
+ *  {@code CompactOriginsNbtBenchmark [fileCount] [layerCount] [rounds]}, which defaults to 10000 files with 3 layers
+ *  each, measured over 5 rounds (after a warm-up round).
+ */
+public final class CompactOriginsNbtBenchmark {
+
+    private static final String[] NAMESPACES = { "origins", "extraorigins", "mediumcore", "originsplus" };
+    private static final String[] ORIGINS = { "human", "arachnid", "avian", "blazeborn", "elytrian", "enderian", "feline", "merling", "phantom", "shulk" };
+
+    public static void main(String[] args) throws IOException {
+
+        int fileCount = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int layerCount = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        String[][] players = createPlayers(fileCount, layerCount);
+        Path dir = Files.createTempDirectory("origins-nbt-benchmark");
+
+        try {
+
+            //  Warm up both formats once, so that neither of them is measured while the JIT is still compiling
+            measure(dir.resolve("warmup-legacy"), players, CompactOriginsNbtBenchmark::writeLegacy);
+            measure(dir.resolve("warmup-compact"), players, CompactOriginsNbtBenchmark::writeCompact);
+
+            Measurement legacy = null;
+            Measurement compact = null;
+
+            for (int round = 0; round < rounds; round++) {
+                legacy = Measurement.best(legacy, measure(dir.resolve("legacy-" + round), players, CompactOriginsNbtBenchmark::writeLegacy));
+                compact = Measurement.best(compact, measure(dir.resolve("compact-" + round), players, CompactOriginsNbtBenchmark::writeCompact));
+            }
+
+            System.out.printf("%d files, %d layers per file, best of %d rounds%n", fileCount, layerCount, rounds);
+            System.out.printf("Legacy:  %,d bytes (%.1f per file) in %d ms%n", legacy.bytes(), (double) legacy.bytes() / fileCount, TimeUnit.NANOSECONDS.toMillis(legacy.nanos()));
+            System.out.printf("Compact: %,d bytes (%.1f per file) in %d ms%n", compact.bytes(), (double) compact.bytes() / fileCount, TimeUnit.NANOSECONDS.toMillis(compact.nanos()));
+            System.out.printf("Compact / legacy: %.1f%% of the size, %.1f%% of the time%n", 100.0 * compact.bytes() / legacy.bytes(), 100.0 * compact.nanos() / legacy.nanos());
+
+        } finally {
+            delete(dir);
+        }
+
+    }
+
+    /**
+     *  @return the IDs of the layer and origin of every layer of every player, alternating
+     */
+    private static String[][] createPlayers(int fileCount, int layerCount) {
+
+        Random random = new Random(0);
+        String[][] players = new String[fileCount][];
+
+        for (int player = 0; player < fileCount; player++) {
+
+            String[] ids = new String[layerCount * 2];
+            for (int layer = 0; layer < layerCount; layer++) {
+                String namespace = NAMESPACES[layer % NAMESPACES.length];
+                ids[layer * 2] = namespace + ":" + (layer == 0 ? "origin" : "layer_" + layer);
+                ids[layer * 2 + 1] = namespace + ":" + ORIGINS[random.nextInt(ORIGINS.length)];
+            }
+
+            players[player] = ids;
+
+        }
+
+        return players;
+
+    }
+
+    private static void writeLegacy(String[] ids, NbtCompound componentNbt) {
+
+        NbtList originLayersNbt = new NbtList();
+        for (int i = 0; i < ids.length; i += 2) {
+
+            NbtCompound originLayerNbt = new NbtCompound();
+
+            originLayerNbt.putString("Layer", ids[i]);
+            originLayerNbt.putString("Origin", ids[i + 1]);
+
+            originLayersNbt.add(originLayerNbt);
+
+        }
+
+        componentNbt.put("OriginLayers", originLayersNbt);
+        componentNbt.putInt(PlayerOriginDataMigration.DATA_VERSION_KEY, PlayerOriginDataMigration.POWERS_DATA_VERSION);
+
+    }
+
+    private static void writeCompact(String[] ids, NbtCompound componentNbt) {
+
+        CompactOriginsNbt originsNbt = new CompactOriginsNbt();
+        for (int i = 0; i < ids.length; i += 2) {
+            originsNbt.add(ids[i], ids[i + 1]);
+        }
+
+        originsNbt.writeTo(componentNbt);
+        componentNbt.putInt(PlayerOriginDataMigration.DATA_VERSION_KEY, PlayerOriginDataMigration.CURRENT_DATA_VERSION);
+
+    }
+
+    private static Measurement measure(Path dir, String[][] players, Format format) throws IOException {
+
+        Files.createDirectories(dir);
+
+        long start = System.nanoTime();
+        for (String[] ids : players) {
+            format.write(ids, dir.resolve(UUID.randomUUID() + ".dat").toFile());
+        }
+
+        long nanos = System.nanoTime() - start;
+        long bytes;
+
+        try (Stream<Path> files = Files.list(dir)) {
+            bytes = files.mapToLong(file -> file.toFile().length()).sum();
+        }
+
+        return new Measurement(bytes, nanos);
+
+    }
+
+    private static void delete(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface Format {
+
+        void encode(String[] ids, NbtCompound componentNbt);
+
+        default void write(String[] ids, File file) throws IOException {
+
+            NbtCompound componentNbt = new NbtCompound();
+            encode(ids, componentNbt);
+
+            componentNbt.putBoolean("SelectingOrigin", false);
+            componentNbt.putBoolean("HadOriginBefore", true);
+
+            //  Not ModComponents.ORIGIN, since registering the component needs a running game
+            NbtCompound componentsNbt = new NbtCompound();
+            componentsNbt.put(Origins.MODID + ":origin", componentNbt);
+
+            NbtCompound playerNbt = new NbtCompound();
+            playerNbt.put("cardinal_components", componentsNbt);
+
+            NbtIo.writeCompressed(playerNbt, file);
+
+        }
+
+    }
+
+    private record Measurement(long bytes, long nanos) {
+
+        private static Measurement best(Measurement prev, Measurement current) {
+            return prev == null || current.nanos() < prev.nanos() ? current : prev;
+        }
+
+    }
+
+}